@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.benchmarks;
+
+import com.google.inject.Injector;
+import io.nuun.kernel.api.Kernel;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.core.Seed;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the hot paths of the LDAP service, and logins through the Shiro security manager, against an in-memory
+ * directory seeded with synthetic data. The directory size and the add-on configuration profile (see the benchmark
+ * application.yaml) are benchmark parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LdapBenchmark {
+    static final int PORT = 53900;
+    private static final String ROLE = "member";
+    @Param({"1000"})
+    private int users;
+    @Param({"100"})
+    private int groups;
+    @Param({"5"})
+    private int groupsPerUser;
+    @Param({"default", "cache", "replica"})
+    private String profile;
+    private SyntheticDirectory directory;
+    private Kernel kernel;
+    private LdapService ldapService;
+    private SecurityManager securityManager;
+    private LdapUserContext[] userContexts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = new SyntheticDirectory(PORT, users, groups, groupsPerUser);
+        directory.start();
+        System.setProperty("seedstack.profiles", profile);
+        kernel = Seed.createKernel();
+        Injector injector = kernel.objectGraph().as(Injector.class);
+        ldapService = injector.getInstance(LdapService.class);
+        securityManager = injector.getInstance(SecurityManager.class);
+        userContexts = new LdapUserContext[users];
+        for (int i = 0; i < users; i++) {
+            userContexts[i] = ldapService.createUserContext(SyntheticDirectory.userDn(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (kernel != null) {
+            Seed.disposeKernel(kernel);
+        }
+        if (directory != null) {
+            directory.stop();
+        }
+    }
+
+    @Benchmark
+    public LdapUserContext findUser() {
+        return ldapService.findUser(SyntheticDirectory.userId(randomUser()));
+    }
+
+    @Benchmark
+    public void authenticate() {
+        ldapService.authenticate(userContexts[randomUser()], SyntheticDirectory.USER_PASSWORD);
+    }
+
+    @Benchmark
+    public Map<String, String> getAttributeValues() {
+        // a fresh context is used so that attributes are not already known
+        return ldapService.getAttributeValues(ldapService.createUserContext(SyntheticDirectory.userDn(randomUser())), "description");
+    }
+
+    @Benchmark
+    public Set<String> retrieveUserGroups() {
+        return ldapService.retrieveUserGroups(userContexts[randomUser()]);
+    }
+
+    @Benchmark
+    public boolean login() {
+        Subject subject = new Subject.Builder(securityManager).buildSubject();
+        try {
+            subject.login(new UsernamePasswordToken(SyntheticDirectory.userId(randomUser()), SyntheticDirectory.USER_PASSWORD));
+            // resolves the roles of the user
+            return subject.hasRole(ROLE);
+        } finally {
+            subject.logout();
+        }
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(users);
+    }
+}
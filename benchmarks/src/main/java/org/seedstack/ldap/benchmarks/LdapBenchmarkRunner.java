@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the LDAP benchmarks once per thread count given by the 'threads' system property (comma-separated, defaults to
+ * '1,4,16'). Other arguments are passed to JMH, so parameters can be overridden like '-p users=10000 -p profile=cache'.
+ * <p>
+ * Build the add-on and the benchmarks with {@code mvn -Pbenchmarks verify} and run them with
+ * {@code java -Dthreads=1,8 -jar benchmarks/target/benchmarks.jar}.
+ */
+public class LdapBenchmarkRunner {
+    private static final String DEFAULT_THREADS = "1,4,16";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (String threads : System.getProperty("threads", DEFAULT_THREADS).split(",")) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(LdapBenchmark.class.getName())
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build()
+            ).run();
+        }
+    }
+}
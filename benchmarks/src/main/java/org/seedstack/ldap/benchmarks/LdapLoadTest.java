@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.benchmarks;
+
+import com.google.inject.Injector;
+import com.unboundid.ldap.sdk.OperationType;
+import io.nuun.kernel.api.Kernel;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.ldap.LdapOperationStatistics;
+import org.seedstack.seed.core.Seed;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of concurrent logins through the whole security stack (Shiro security manager, LDAP realm, LDAP service and
+ * connection pools) against an in-memory directory seeded with synthetic users, with an injected latency per LDAP operation.
+ * <p>
+ * Logins are started open-loop: their arrivals follow a Poisson process at the target rate, whatever the completion of the
+ * previous ones, and their latency is measured from their scheduled arrival. The latency of logins that cannot be served in
+ * time thus includes their queueing. Each configuration (profile, connection number and rate) runs in its own application,
+ * warmed up before measuring.
+ * <p>
+ * Settings are system properties: 'profiles' (comma-separated profiles of the benchmark application.yaml, defaults to
+ * 'default'), 'connectionNumbers' (comma-separated, defaults to '8'), 'rates' (comma-separated logins per second, defaults to
+ * '200'), 'duration' and 'warmup' (seconds, default to 30 and 5), 'users', 'groups' and 'groupsPerUser' (directory content,
+ * default to 10000, 100 and 5), 'bindLatency' and 'searchLatency' (milliseconds, default to 2) and 'clients' (maximum number
+ * of logins in progress, defaults to 1000). Other add-on settings can be given as 'seedstack.config.security.ldap.*' system
+ * properties. Unless given otherwise, pools don't grow on demand and wait up to 10 seconds for a connection, so that the
+ * connection number actually bounds the concurrency of LDAP requests.
+ * <p>
+ * Build the add-on and the benchmarks with {@code mvn -Pbenchmarks verify} and run the load test with
+ * {@code java -DconnectionNumbers=4,8,16 -Drates=500,1000 -cp benchmarks/target/benchmarks.jar org.seedstack.ldap.benchmarks.LdapLoadTest}.
+ */
+public class LdapLoadTest {
+    private static final String CONNECTION_NUMBER_PROPERTY = "seedstack.config.security.ldap.connectionNumber";
+    private static final String GROW_ON_DEMAND_PROPERTY = "seedstack.config.security.ldap.pool.growOnDemand";
+    private static final String MAX_WAIT_TIME_PROPERTY = "seedstack.config.security.ldap.pool.maxWaitTime";
+    private static final String ROLE = "member";
+    private static final String HEADER_FORMAT = "%-10s %11s %8s %10s %9s %7s %9s %9s %9s %9s  %s%n";
+    private static final String ROW_FORMAT = "%-10s %11d %8d %10.1f %9d %7d %9.2f %9.2f %9.2f %9.2f  %s%n";
+    private final int users = Integer.getInteger("users", 10000);
+    private final int groups = Integer.getInteger("groups", 100);
+    private final int groupsPerUser = Integer.getInteger("groupsPerUser", 5);
+    private final long bindLatency = Long.getLong("bindLatency", 2);
+    private final long searchLatency = Long.getLong("searchLatency", 2);
+    private final int clients = Integer.getInteger("clients", 1000);
+    private final int warmup = Integer.getInteger("warmup", 5);
+    private final int duration = Integer.getInteger("duration", 30);
+
+    public static void main(String[] args) throws Exception {
+        setDefaultProperty(GROW_ON_DEMAND_PROPERTY, "false");
+        setDefaultProperty(MAX_WAIT_TIME_PROPERTY, "10000");
+        new LdapLoadTest().run(
+                System.getProperty("profiles", "default").split(","),
+                System.getProperty("connectionNumbers", "8").split(","),
+                System.getProperty("rates", "200").split(",")
+        );
+    }
+
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    private void run(String[] profiles, String[] connectionNumbers, String[] rates) throws Exception {
+        SyntheticDirectory directory = new SyntheticDirectory(LdapBenchmark.PORT, users, groups, groupsPerUser);
+        directory.setLatency(OperationType.BIND, bindLatency);
+        directory.setLatency(OperationType.SEARCH, searchLatency);
+        directory.start();
+        try {
+            System.out.printf(Locale.ROOT, HEADER_FORMAT, "profile", "connections", "rate/s", "achieved/s", "logins", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms", "pool wait p50/p99 ms");
+            for (String profile : profiles) {
+                for (String connectionNumber : connectionNumbers) {
+                    for (String rate : rates) {
+                        runConfiguration(profile.trim(), Integer.parseInt(connectionNumber.trim()), Integer.parseInt(rate.trim()));
+                    }
+                }
+            }
+        } finally {
+            directory.stop();
+        }
+    }
+
+    private void runConfiguration(String profile, int connectionNumber, int rate) throws InterruptedException {
+        System.setProperty("seedstack.profiles", profile);
+        System.setProperty(CONNECTION_NUMBER_PROPERTY, String.valueOf(connectionNumber));
+        Kernel kernel = Seed.createKernel();
+        try {
+            Injector injector = kernel.objectGraph().as(Injector.class);
+            SecurityManager securityManager = injector.getInstance(SecurityManager.class);
+            LdapMetrics ldapMetrics = injector.getInstance(LdapMetrics.class);
+
+            drive(securityManager, rate, warmup, new LatencyRecorder(0));
+            ldapMetrics.reset();
+            LatencyRecorder recorder = new LatencyRecorder((int) Math.min(Integer.MAX_VALUE, 2L * rate * duration + 1000));
+            drive(securityManager, rate, duration, recorder);
+
+            StringBuilder poolWaits = new StringBuilder();
+            for (String poolName : ldapMetrics.getPoolNames()) {
+                LdapOperationStatistics checkoutWait = ldapMetrics.getPoolStatistics(poolName).getCheckoutWait();
+                poolWaits.append(String.format(Locale.ROOT, "%s %.3f/%.3f ", poolName, checkoutWait.getLatencyPercentile(0.5), checkoutWait.getLatencyPercentile(0.99)));
+            }
+            System.out.printf(Locale.ROOT, ROW_FORMAT, profile, connectionNumber, rate,
+                    recorder.getThroughput(), recorder.getCount(), recorder.getErrorCount(),
+                    recorder.getPercentile(0.5), recorder.getPercentile(0.99), recorder.getPercentile(0.999), recorder.getPercentile(1),
+                    poolWaits.toString().trim());
+        } finally {
+            Seed.disposeKernel(kernel);
+        }
+    }
+
+    private void drive(SecurityManager securityManager, int rate, int seconds, LatencyRecorder recorder) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(clients);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        long nextNanos = startNanos;
+        recorder.start(startNanos);
+        while (nextNanos < endNanos) {
+            long delayNanos = nextNanos - System.nanoTime();
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+            final long scheduledNanos = nextNanos;
+            final String userId = SyntheticDirectory.userId(random.nextInt(users));
+            executorService.execute(() -> {
+                boolean success = login(securityManager, userId);
+                recorder.record(scheduledNanos, System.nanoTime(), success);
+            });
+            // exponential inter-arrival times make a Poisson process
+            nextNanos += (long) (-Math.log(1 - random.nextDouble()) * TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+        executorService.shutdown();
+        if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private boolean login(SecurityManager securityManager, String userId) {
+        Subject subject = new Subject.Builder(securityManager).buildSubject();
+        try {
+            subject.login(new UsernamePasswordToken(userId, SyntheticDirectory.USER_PASSWORD));
+            // resolves the roles of the user
+            subject.hasRole(ROLE);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            subject.logout();
+        }
+    }
+
+    /**
+     * Records the latency of every login, so that percentiles are exact.
+     */
+    private static class LatencyRecorder {
+        private final long[] latencies;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger errorCount = new AtomicInteger();
+        private final AtomicLong lastEndNanos = new AtomicLong();
+        private long startNanos;
+
+        private LatencyRecorder(int capacity) {
+            this.latencies = new long[capacity];
+        }
+
+        private void start(long startNanos) {
+            this.startNanos = startNanos;
+            this.lastEndNanos.set(startNanos);
+        }
+
+        private void record(long scheduledNanos, long endNanos, boolean success) {
+            int index = count.getAndIncrement();
+            if (index < latencies.length) {
+                latencies[index] = endNanos - scheduledNanos;
+            }
+            if (!success) {
+                errorCount.incrementAndGet();
+            }
+            lastEndNanos.accumulateAndGet(endNanos, Math::max);
+        }
+
+        private int getCount() {
+            return count.get();
+        }
+
+        private int getErrorCount() {
+            return errorCount.get();
+        }
+
+        private double getThroughput() {
+            long elapsedNanos = lastEndNanos.get() - startNanos;
+            return elapsedNanos == 0 ? 0 : getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        private double getPercentile(double quantile) {
+            int recorded = Math.min(count.get(), latencies.length);
+            if (recorded == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, recorded);
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(quantile * recorded) - 1);
+            return sorted[index] / 1000000d;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.benchmarks;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.OperationType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory LDAP directory seeded with synthetic users and groups. Each user is a member of a fixed number of groups,
+ * spread evenly across all the groups. A latency can be injected in the processing of binds and searches, to simulate a
+ * remote directory. As each client connection is served by its own thread, a connection waiting for the injected latency
+ * delays its next requests but not those of other connections.
+ */
+class SyntheticDirectory {
+    static final String BASE_DN = "dc=example,dc=com";
+    static final String PEOPLE_DN = "ou=people," + BASE_DN;
+    static final String GROUPS_DN = "ou=groups," + BASE_DN;
+    static final String ADMIN_DN = "cn=admin," + PEOPLE_DN;
+    static final String ADMIN_PASSWORD = "admin";
+    static final String USER_PASSWORD = "password";
+    private final InMemoryDirectoryServer directoryServer;
+    private final Map<OperationType, Long> latencies = new ConcurrentHashMap<>();
+
+    SyntheticDirectory(int port, int userCount, int groupCount, int groupsPerUser) throws LDAPException {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(ADMIN_DN, ADMIN_PASSWORD);
+        config.setListenerConfigs(new InMemoryListenerConfig("synthetic", null, port, null, null, null));
+        config.addInMemoryOperationInterceptor(new LatencyInterceptor());
+        directoryServer = new InMemoryDirectoryServer(config);
+        directoryServer.add(new Entry(BASE_DN, attribute("objectClass", "dcObject", "organization"), attribute("dc", "example"), attribute("o", "example")));
+        directoryServer.add(new Entry(PEOPLE_DN, attribute("objectClass", "organizationalUnit"), attribute("ou", "people")));
+        directoryServer.add(new Entry(GROUPS_DN, attribute("objectClass", "organizationalUnit"), attribute("ou", "groups")));
+
+        for (int i = 0; i < userCount; i++) {
+            directoryServer.add(new Entry(userDn(i),
+                    attribute("objectClass", "person"),
+                    attribute("cn", userId(i)),
+                    attribute("sn", userId(i)),
+                    attribute("description", "Synthetic user " + i),
+                    attribute("userPassword", USER_PASSWORD)
+            ));
+        }
+
+        int effectiveGroupsPerUser = Math.min(groupsPerUser, groupCount);
+        String[][] members = new String[groupCount][];
+        int[] memberCounts = new int[groupCount];
+        for (int i = 0; i < userCount; i++) {
+            for (int j = 0; j < effectiveGroupsPerUser; j++) {
+                memberCounts[(i + j) % groupCount]++;
+            }
+        }
+        for (int g = 0; g < groupCount; g++) {
+            members[g] = new String[memberCounts[g]];
+            memberCounts[g] = 0;
+        }
+        for (int i = 0; i < userCount; i++) {
+            for (int j = 0; j < effectiveGroupsPerUser; j++) {
+                int g = (i + j) % groupCount;
+                members[g][memberCounts[g]++] = userDn(i);
+            }
+        }
+        for (int g = 0; g < groupCount; g++) {
+            Attribute memberAttribute = members[g].length == 0 ? attribute("member", ADMIN_DN) : attribute("member", members[g]);
+            directoryServer.add(new Entry("cn=group" + g + "," + GROUPS_DN,
+                    attribute("objectClass", "groupOfNames"),
+                    attribute("cn", "group" + g),
+                    memberAttribute
+            ));
+        }
+    }
+
+    static String userId(int index) {
+        return "user" + index;
+    }
+
+    static String userDn(int index) {
+        return "cn=" + userId(index) + "," + PEOPLE_DN;
+    }
+
+    /**
+     * Sets the time the directory waits before processing each request of an operation type.
+     *
+     * @param operationType the type of operation, either {@link OperationType#BIND} or {@link OperationType#SEARCH}.
+     * @param latencyMillis the latency in milliseconds.
+     */
+    void setLatency(OperationType operationType, long latencyMillis) {
+        latencies.put(operationType, latencyMillis);
+    }
+
+    void start() throws LDAPException {
+        directoryServer.startListening();
+    }
+
+    void stop() {
+        directoryServer.shutDown(true);
+    }
+
+    private static Attribute attribute(String name, String... values) {
+        return new Attribute(name, values);
+    }
+
+    private class LatencyInterceptor extends InMemoryOperationInterceptor {
+        @Override
+        public void processSimpleBindRequest(InMemoryInterceptedSimpleBindRequest request) {
+            await(OperationType.BIND);
+        }
+
+        @Override
+        public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+            await(OperationType.SEARCH);
+        }
+
+        private void await(OperationType operationType) {
+            Long latency = latencies.get(operationType);
+            if (latency != null && latency > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
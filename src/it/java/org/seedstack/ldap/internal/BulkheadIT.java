@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.junit.After;
+import org.junit.Test;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.seed.SeedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BulkheadIT {
+    // 2 connections reserved for authentication and 1 for roles leave a single shared connection for attributes
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Bulkhead bulkhead = new Bulkhead(new LdapConfig.BulkheadConfig().setEnabled(true).setMaxWait(200), 4, scheduler);
+
+    @After
+    public void shutdownScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void authenticationAdmittedWhileAttributesSaturatedTest() {
+        bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        try {
+            bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES);
+            fail("the attributes compartment should be saturated");
+        } catch (SeedException e) {
+            assertThat(e.getErrorCode()).isEqualTo(LdapErrorCode.BULKHEAD_FULL);
+        }
+
+        bulkhead.acquire(LdapMetrics.FIND_USER);
+        bulkhead.acquire(LdapMetrics.AUTHENTICATE);
+        assertThat(bulkhead.getInFlight())
+                .containsEntry(Bulkhead.Compartment.AUTHENTICATION, 2)
+                .containsEntry(Bulkhead.Compartment.ATTRIBUTES, 1);
+
+        bulkhead.release(LdapMetrics.AUTHENTICATE);
+        bulkhead.release(LdapMetrics.FIND_USER);
+        bulkhead.release(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        assertThat(bulkhead.getInFlight()).containsValues(0, 0, 0, 0);
+    }
+
+    @Test
+    public void waitingRequestAdmittedOnReleaseTest() throws Exception {
+        bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES));
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+
+        bulkhead.release(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        waiting.get(1, TimeUnit.SECONDS);
+        assertThat(bulkhead.getInFlight()).containsEntry(Bulkhead.Compartment.ATTRIBUTES, 1);
+        bulkhead.release(LdapMetrics.GET_ATTRIBUTE_VALUES);
+    }
+
+    @Test
+    public void asyncRequestQueuedWithoutBlockingTest() throws Exception {
+        bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        CompletableFuture<String> queued = bulkhead.callAsync(LdapMetrics.GET_ATTRIBUTE_VALUES, () -> response);
+        assertThat(queued).isNotDone();
+
+        bulkhead.release(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        assertThat(bulkhead.getInFlight()).containsEntry(Bulkhead.Compartment.ATTRIBUTES, 1);
+        response.complete("sent");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("sent");
+        assertThat(bulkhead.getInFlight()).containsEntry(Bulkhead.Compartment.ATTRIBUTES, 0);
+    }
+
+    @Test
+    public void asyncRequestExpiredTest() throws Exception {
+        bulkhead.acquire(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        CompletableFuture<String> queued = bulkhead.callAsync(LdapMetrics.GET_ATTRIBUTE_VALUES, () -> CompletableFuture.completedFuture("sent"));
+        try {
+            queued.get(1, TimeUnit.SECONDS);
+            fail("the request should not have been admitted");
+        } catch (ExecutionException e) {
+            assertThat(((SeedException) e.getCause()).getErrorCode()).isEqualTo(LdapErrorCode.BULKHEAD_FULL);
+        }
+        bulkhead.release(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        assertThat(bulkhead.getInFlight()).containsValues(0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.AsyncLdapService;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+import org.seedstack.seed.ldap.LdapITPlugin;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapSnapshotIT {
+    private static final String LDAP = "seedstack.config.security.ldap.";
+    private static final String[] PROPERTIES = {"port", "startup.mode", "startup.maxWait", "snapshot.enabled", "snapshot.path"};
+    private static final String SNAPSHOT_PATH = "target/ldap-it.snapshot";
+    private static final String JDOE_DN = "cn=John Doe - 123456,ou=people,dc=example,dc=com";
+    @Inject
+    private AsyncLdapService asyncLdapService;
+
+    @BeforeKernel
+    public static void writeSnapshot() throws IOException {
+        LdapConfig.SnapshotConfig snapshotConfig = new LdapConfig.SnapshotConfig().setEnabled(true).setPath(SNAPSHOT_PATH);
+        Files.deleteIfExists(Paths.get(SNAPSHOT_PATH));
+        DirectorySnapshot directorySnapshot = new DirectorySnapshot(snapshotConfig);
+        directorySnapshot.recordUser("jdoe", JDOE_DN);
+        directorySnapshot.recordGroups(JDOE_DN, Sets.newHashSet("SEED.JEDI", "SEED.PADAWAN"));
+        directorySnapshot.write();
+
+        // the snapshot is read back as after a restart
+        Map<String, DirectorySnapshot.Membership> memberships = new DirectorySnapshot(snapshotConfig).load();
+        assertThat(memberships).containsOnlyKeys(JDOE_DN);
+        assertThat(memberships.get(JDOE_DN).getGroups()).containsOnly("SEED.JEDI", "SEED.PADAWAN");
+
+        // no directory listens on this port, so the application starts without it
+        System.setProperty(LDAP + "port", "53899");
+        System.setProperty(LDAP + "startup.mode", "BACKGROUND");
+        System.setProperty(LDAP + "startup.maxWait", "0");
+        System.setProperty(LDAP + "snapshot.enabled", "true");
+        System.setProperty(LDAP + "snapshot.path", SNAPSHOT_PATH);
+    }
+
+    @AfterKernel
+    public static void clearProperties() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(LDAP + property);
+        }
+    }
+
+    @Test
+    public void fallbackTest() throws Exception {
+        LdapUserContext userContext = asyncLdapService.findUserAsync("jdoe").get();
+        assertThat(userContext.getDn()).isEqualTo(JDOE_DN);
+        assertThat(asyncLdapService.retrieveUserGroupsAsync(userContext).get()).containsOnly("SEED.JEDI", "SEED.PADAWAN");
+    }
+}
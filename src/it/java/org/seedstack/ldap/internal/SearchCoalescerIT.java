@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchScope;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchCoalescerIT {
+    private static final String BASE_DN = "ou=people,dc=example,dc=com";
+    private final SearchCoalescer searchCoalescer = new SearchCoalescer();
+    private final AtomicInteger ldapCalls = new AtomicInteger();
+    private final CompletableFuture<SearchResult> ldapResponse = new CompletableFuture<>();
+    private final Supplier<CompletableFuture<SearchResult>> searcher = () -> {
+        ldapCalls.incrementAndGet();
+        return ldapResponse;
+    };
+
+    @Test
+    public void concurrentIdenticalSearchesShareOneCallTest() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CompletableFuture<SearchResult>>> searches = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                // attributes differing in order and case don't make searches different
+                String[] attributes = i % 2 == 0 ? new String[]{"cn", "description"} : new String[]{"DESCRIPTION", "cn"};
+                searches.add(executorService.submit(() -> {
+                    start.await();
+                    return searchCoalescer.search(BASE_DN, SearchScope.SUB, Filter.create("(sn=jdoe)"), attributes, searcher);
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<SearchResult>> results = new ArrayList<>();
+            for (Future<CompletableFuture<SearchResult>> search : searches) {
+                results.add(search.get(1, TimeUnit.SECONDS));
+            }
+            assertThat(ldapCalls.get()).isEqualTo(1);
+
+            SearchResult searchResult = new SearchResult(1, ResultCode.SUCCESS, null, null, null, 0, 0, new Control[0]);
+            ldapResponse.complete(searchResult);
+            for (CompletableFuture<SearchResult> result : results) {
+                assertThat(result.get(1, TimeUnit.SECONDS)).isSameAs(searchResult);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void completedSearchNotSharedTest() throws Exception {
+        searchCoalescer.search(BASE_DN, SearchScope.SUB, Filter.create("(sn=jdoe)"), new String[]{"cn"}, searcher);
+        searchCoalescer.search(BASE_DN, SearchScope.SUB, Filter.create("(sn=other)"), new String[]{"cn"}, searcher);
+        assertThat(ldapCalls.get()).isEqualTo(2);
+
+        ldapResponse.complete(new SearchResult(1, ResultCode.SUCCESS, null, null, null, 0, 0, new Control[0]));
+        searchCoalescer.search(BASE_DN, SearchScope.SUB, Filter.create("(sn=jdoe)"), new String[]{"cn"}, searcher);
+        assertThat(ldapCalls.get()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.jcache;
+
+import org.junit.Test;
+import org.seedstack.ldap.LdapCache;
+import org.seedstack.ldap.LdapConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JCacheLdapCacheIT {
+    private final LdapCache<String> cache = new JCacheLdapCacheProvider().createCache("expiry-it", new LdapConfig.CacheConfig().setEnabled(true));
+
+    @Test
+    public void entryExpiresAfterItsOwnTtlTest() throws Exception {
+        cache.put("warmed", "value", 100);
+        cache.put("loaded", "value");
+        assertThat(cache.get("warmed")).isEqualTo("value");
+
+        Thread.sleep(200);
+        assertThat(cache.get("warmed")).isNull();
+        assertThat(cache.get("loaded")).isEqualTo("value");
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapCacheStatistics;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.ldap.LdapOperationStatistics;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.SeedException;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapCacheIT {
+    private static final String LDAP = "seedstack.config.security.ldap.";
+    private static final String[] PROPERTIES = {"user.cache.enabled", "user.attributeCache.enabled", "user.negativeCache.enabled", "user.credentialCache.enabled", "group.cache.enabled", "group.roleCache.enabled"};
+    private static final String[] TWIN_DNS = {"cn=Fred Weasley,ou=people,dc=example,dc=com", "cn=George Weasley,ou=people,dc=example,dc=com"};
+    @Inject
+    private SecurityManager securityManager;
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private LdapCacheManager ldapCacheManager;
+    @Inject
+    private LdapMetrics ldapMetrics;
+
+    @BeforeKernel
+    public static void enableCaches() {
+        for (String property : PROPERTIES) {
+            System.setProperty(LDAP + property, "true");
+        }
+    }
+
+    @AfterKernel
+    public static void disableCaches() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(LDAP + property);
+        }
+    }
+
+    @Test
+    public void groupCacheTest() {
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        ldapCacheManager.invalidate(LdapCacheManager.USER_GROUPS, userContext.getDn());
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.USER_GROUPS);
+        long hitCount = statistics.getHitCount();
+        long missCount = statistics.getMissCount();
+
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsExactly("SEED.JEDI");
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsExactly("SEED.JEDI");
+        assertThat(statistics.getMissCount()).isEqualTo(missCount + 1);
+        assertThat(statistics.getHitCount()).isEqualTo(hitCount + 1);
+    }
+
+    @Test
+    public void userCacheTest() {
+        ldapCacheManager.invalidate(LdapCacheManager.USERS, "jdoe");
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.USERS);
+        long hitCount = statistics.getHitCount();
+
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        assertThat(ldapService.findUser("jdoe").getDn()).isEqualTo(userContext.getDn());
+        assertThat(statistics.getHitCount()).isEqualTo(hitCount + 1);
+    }
+
+    @Test
+    public void attributeCacheTest() {
+        String dn = ldapService.findUser("jdoe").getDn();
+        ldapCacheManager.invalidate(LdapCacheManager.USER_ATTRIBUTES, dn);
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.USER_ATTRIBUTES);
+        long hitCount = statistics.getHitCount();
+
+        assertThat(ldapService.getAttributeValue(ldapService.createUserContext(dn), "description")).isEqualTo("Utilisateur");
+        assertThat(ldapService.getAttributeValue(ldapService.createUserContext(dn), "description")).isEqualTo("Utilisateur");
+        assertThat(statistics.getHitCount()).isEqualTo(hitCount + 1);
+    }
+
+    @Test
+    public void unknownUserCacheTest() {
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.UNKNOWN_USERS);
+        for (int i = 0; i < 2; i++) {
+            try {
+                ldapService.findUser("nobody");
+                fail("nobody should not be found");
+            } catch (SeedException e) {
+                assertThat(e.getErrorCode().toString()).isEqualTo("UNKNOWN_USER");
+            }
+        }
+        assertThat(statistics.getHitCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void ambiguousFindUsersTest() throws LDAPException {
+        LDAPConnection connection = new LDAPConnection("localhost", 53800, "cn=admin,ou=people,dc=example,dc=com", "admin");
+        try {
+            for (String dn : TWIN_DNS) {
+                connection.add(new Entry(dn, new Attribute("objectClass", "person"), new Attribute("cn", dn.substring(3, dn.indexOf(','))), new Attribute("sn", "twin")));
+            }
+            assertThat(ldapService.findUsers(Arrays.asList("jdoe", "twin"))).containsOnlyKeys("jdoe");
+            // the ambiguous user is not cached as unknown
+            try {
+                ldapService.findUser("twin");
+                fail("twin should be ambiguous");
+            } catch (SeedException e) {
+                assertThat(e.getErrorCode().toString()).isEqualTo("AMBIGUOUS_USER");
+            }
+        } finally {
+            for (String dn : TWIN_DNS) {
+                connection.delete(dn);
+            }
+            connection.close();
+        }
+    }
+
+    @Test
+    public void credentialCacheTest() {
+        ThreadContext.bind(securityManager);
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.CREDENTIALS);
+        LdapOperationStatistics authentications = ldapMetrics.getOperationStatistics(LdapMetrics.AUTHENTICATE);
+        ldapCacheManager.invalidate(LdapCacheManager.CREDENTIALS, "jdoe");
+        long hitCount = statistics.getHitCount();
+        long authenticationCount = authentications.getCount();
+
+        new Subject.Builder(securityManager).buildSubject().login(new UsernamePasswordToken("jdoe", "password"));
+        new Subject.Builder(securityManager).buildSubject().login(new UsernamePasswordToken("jdoe", "password"));
+        assertThat(statistics.getHitCount()).isEqualTo(hitCount + 1);
+        assertThat(authentications.getCount()).isEqualTo(authenticationCount + 1);
+    }
+
+    @Test
+    public void roleCacheTest() {
+        ThreadContext.bind(securityManager);
+        LdapCacheStatistics statistics = ldapCacheManager.getStatistics(LdapCacheManager.ROLES);
+        ldapCacheManager.invalidateAll(LdapCacheManager.ROLES);
+        long hitCount = statistics.getHitCount();
+
+        for (int i = 0; i < 2; i++) {
+            Subject subject = new Subject.Builder(securityManager).buildSubject();
+            subject.login(new UsernamePasswordToken("jdoe", "password"));
+            assertThat(subject.hasRole("jedi")).isTrue();
+            assertThat(subject.isPermitted("academy:learn")).isTrue();
+            assertThat(subject.isPermitted("site:haunt")).isFalse();
+            subject.logout();
+        }
+        assertThat(statistics.getHitCount()).isGreaterThan(hitCount);
+    }
+}
@@ -11,7 +11,10 @@ import com.google.common.collect.Lists;
 import com.unboundid.ldap.listener.InMemoryDirectoryServer;
 import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
 import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.schema.Schema;
 import io.nuun.kernel.api.plugin.InitState;
 import io.nuun.kernel.api.plugin.context.InitContext;
 import io.nuun.kernel.core.AbstractPlugin;
@@ -41,6 +44,9 @@ public class LdapITPlugin extends AbstractPlugin {
             config.addAdditionalBindCredentials("cn=John Doe - 123456, ou=people, dc=example,dc=com", "password");
             InMemoryListenerConfig listenerConfig = new InMemoryListenerConfig("test", null, 53800, null, null, null);
             config.setListenerConfigs(listenerConfig);
+            // a static memberOf user attribute, not maintained by the server, so that AUTO resolution keeps searching groups
+            config.setSchema(Schema.mergeSchemas(Schema.getDefaultStandardSchema(), new Schema(new Entry("cn=schema",
+                    new Attribute("attributeTypes", "( 1.2.840.113556.1.2.102 NAME 'memberOf' SYNTAX 1.3.6.1.4.1.1466.115.121.1.12 )")))));
             ds = new InMemoryDirectoryServer(config);
             ds.importFromLDIF(true, "src/it/resources/data.ldif");
             ds.startListening();
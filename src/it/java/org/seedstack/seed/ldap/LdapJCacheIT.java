@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapCacheStatistics;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapJCacheIT {
+    private static final String LDAP = "seedstack.config.security.ldap.";
+    private static final String[] PROPERTIES = {"cacheProvider", "user.cache.enabled", "group.cache.enabled"};
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private LdapCacheManager ldapCacheManager;
+
+    @BeforeKernel
+    public static void enableJCache() {
+        System.setProperty(LDAP + "cacheProvider", "org.seedstack.ldap.jcache.JCacheLdapCacheProvider");
+        System.setProperty(LDAP + "user.cache.enabled", "true");
+        System.setProperty(LDAP + "group.cache.enabled", "true");
+    }
+
+    @AfterKernel
+    public static void disableJCache() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(LDAP + property);
+        }
+    }
+
+    @Test
+    public void cacheTest() {
+        ldapCacheManager.invalidateAll();
+        LdapCacheStatistics userStatistics = ldapCacheManager.getStatistics(LdapCacheManager.USERS);
+        LdapCacheStatistics groupStatistics = ldapCacheManager.getStatistics(LdapCacheManager.USER_GROUPS);
+        long userHitCount = userStatistics.getHitCount();
+        long groupHitCount = groupStatistics.getHitCount();
+
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        assertThat(ldapService.findUser("jdoe").getDn()).isEqualTo(userContext.getDn());
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsExactly("SEED.JEDI");
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsExactly("SEED.JEDI");
+        assertThat(userStatistics.getHitCount()).isEqualTo(userHitCount + 1);
+        assertThat(groupStatistics.getHitCount()).isEqualTo(groupHitCount + 1);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+import org.seedstack.seed.security.SecuritySupport;
+import org.seedstack.seed.security.WithUser;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapMemberOfIT {
+    private static final String MEMBERSHIP_RESOLUTION = "seedstack.config.security.ldap.group.membershipResolution";
+    private static final String GROUP_CACHE_ENABLED = "seedstack.config.security.ldap.group.cache.enabled";
+    private static final String PADAWAN_DN = "cn=SEED.PADAWAN,ou=groups,dc=example,dc=com";
+    @Inject
+    private SecuritySupport securitySupport;
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private LdapCacheManager ldapCacheManager;
+
+    @BeforeKernel
+    public static void enableMemberOf() {
+        System.setProperty(MEMBERSHIP_RESOLUTION, "MEMBER_OF");
+        System.setProperty(GROUP_CACHE_ENABLED, "true");
+    }
+
+    @AfterKernel
+    public static void disableMemberOf() {
+        System.clearProperty(MEMBERSHIP_RESOLUTION);
+        System.clearProperty(GROUP_CACHE_ENABLED);
+    }
+
+    @Test
+    @WithUser(id = "jdoe", password = "password")
+    public void rolesTest() {
+        // SEED.PADAWAN is only listed in the memberOf attribute of the user, and groups outside the group base DN are ignored
+        assertThat(securitySupport.hasRole("jedi")).isTrue();
+        assertThat(securitySupport.hasRole("padawan")).isTrue();
+        LdapUserContext userContext = securitySupport.getPrincipalsByType(LdapUserContext.class).iterator().next().getPrincipal();
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI", "SEED.PADAWAN");
+    }
+
+    @Test
+    @WithUser(id = "jdoe", password = "password")
+    public void invalidationTest() throws LDAPException {
+        LdapUserContext userContext = securitySupport.getPrincipalsByType(LdapUserContext.class).iterator().next().getPrincipal();
+        assertThat(ldapService.retrieveUserGroups(userContext)).contains("SEED.PADAWAN");
+
+        LDAPConnection connection = new LDAPConnection("localhost", 53800, "cn=admin,ou=people,dc=example,dc=com", "admin");
+        try {
+            connection.modify(userContext.getDn(), new Modification(ModificationType.DELETE, "memberOf", PADAWAN_DN));
+            // still served by the group cache until it expires or is invalidated
+            assertThat(ldapService.retrieveUserGroups(userContext)).contains("SEED.PADAWAN");
+            ldapCacheManager.invalidate(LdapCacheManager.USER_GROUPS, userContext.getDn());
+            assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI");
+        } finally {
+            connection.modify(userContext.getDn(), new Modification(ModificationType.ADD, "memberOf", PADAWAN_DN));
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.AsyncLdapService;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+
+import javax.inject.Inject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapNestedGroupsIT {
+    private static final String NESTED_ENABLED = "seedstack.config.security.ldap.group.nested.enabled";
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private AsyncLdapService asyncLdapService;
+
+    @BeforeKernel
+    public static void enableNestedGroups() {
+        System.setProperty(NESTED_ENABLED, "true");
+    }
+
+    @AfterKernel
+    public static void disableNestedGroups() {
+        System.clearProperty(NESTED_ENABLED);
+    }
+
+    @Test
+    public void transitiveGroupsTest() throws Exception {
+        // SEED.JEDI is a member of SEED.COUNCIL, itself a member of SEED.ORDER
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI", "SEED.COUNCIL", "SEED.ORDER");
+        assertThat(asyncLdapService.retrieveUserGroupsAsync(userContext).get()).containsOnly("SEED.JEDI", "SEED.COUNCIL", "SEED.ORDER");
+    }
+}
@@ -15,16 +15,26 @@ import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.seedstack.ldap.AsyncLdapService;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.ldap.LdapOperationStatistics;
 import org.seedstack.ldap.LdapService;
 import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.SeedException;
 import org.seedstack.seed.it.SeedITRunner;
 import org.seedstack.seed.it.WithPlugins;
 import org.seedstack.seed.security.SecuritySupport;
 import org.seedstack.seed.security.WithUser;
 
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 
 @RunWith(SeedITRunner.class)
 @WithPlugins(LdapITPlugin.class)
@@ -35,6 +45,12 @@ public class LdapRealmIT {
     private SecuritySupport securitySupport;
     @Inject
     private LdapService ldapService;
+    @Inject
+    private LdapCacheManager ldapCacheManager;
+    @Inject
+    private AsyncLdapService asyncLdapService;
+    @Inject
+    private LdapMetrics ldapMetrics;
 
     @Test
     @WithUser(id = "jdoe", password = "password")
@@ -45,6 +61,91 @@ public class LdapRealmIT {
         assertThat(ldapService.getAttributeValue(userContext, "dummy")).isNull();
     }
 
+    @Test
+    public void asyncTest() throws Exception {
+        LdapUserContext userContext = asyncLdapService.findUserAsync("jdoe").get();
+        asyncLdapService.authenticateAsync(userContext, "password").get();
+        assertThat(asyncLdapService.getAttributeValuesAsync(userContext, "sn").get()).containsEntry("sn", "jdoe");
+        assertThat(asyncLdapService.retrieveUserGroupsAsync(userContext).get()).containsExactly("SEED.JEDI");
+    }
+
+    @Test
+    public void findUsersTest() {
+        Map<String, LdapUserContext> users = ldapService.findUsers(Arrays.asList("jdoe", "admin", "nobody"), "description");
+        assertThat(users).containsOnlyKeys("jdoe", "admin");
+        assertThat(ldapService.getAttributeValue(users.get("admin"), "description")).isEqualTo("Administrateur LDAP");
+    }
+
+    @Test
+    public void noCacheByDefaultTest() {
+        LdapOperationStatistics statistics = ldapMetrics.getOperationStatistics(LdapMetrics.FIND_USER);
+        long entryCount = statistics.getEntryCount();
+
+        ldapService.findUser("jdoe");
+        ldapService.findUser("jdoe");
+        assertThat(statistics.getEntryCount()).isEqualTo(entryCount + 2);
+    }
+
+    @Test
+    public void metricsTest() {
+        LdapOperationStatistics statistics = ldapMetrics.getOperationStatistics(LdapMetrics.AUTHENTICATE);
+        long count = statistics.getCount();
+        long errorCount = statistics.getErrorCount();
+
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        ldapService.authenticate(userContext, "password");
+        try {
+            ldapService.authenticate(userContext, "wrong");
+            fail("authentication should have failed");
+        } catch (SeedException e) {
+            // expected
+        }
+        assertThat(statistics.getCount()).isEqualTo(count + 2);
+        assertThat(statistics.getErrorCount()).isEqualTo(errorCount + 1);
+        assertThat(statistics.getErrorCounts()).containsKey("invalid credentials");
+        assertThat(statistics.getLatencyPercentile(0.5)).isGreaterThan(0);
+        assertThat(ldapMetrics.getPoolStatistics(LdapMetrics.MAIN_POOL).getCheckoutCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void prefetchProfileTest() {
+        ldapCacheManager.invalidate(LdapCacheManager.USERS, "jdoe");
+        LdapOperationStatistics statistics = ldapMetrics.getOperationStatistics(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        long entryCount = statistics.getEntryCount();
+
+        LdapUserContext userContext = ldapService.findUser("jdoe", LdapService.LOGIN_PROFILE);
+        assertThat(ldapService.getAttributeValue(userContext, "cn")).isEqualTo("John Doe - 123456");
+        assertThat(ldapService.getAttributeValue(userContext, "description")).isEqualTo("Utilisateur");
+        assertThat(statistics.getEntryCount()).isEqualTo(entryCount);
+    }
+
+    @Test
+    public void absentAttributeTest() {
+        LdapOperationStatistics statistics = ldapMetrics.getOperationStatistics(LdapMetrics.GET_ATTRIBUTE_VALUES);
+        LdapUserContext userContext = ldapService.createUserContext("cn=John Doe - 123456,ou=people,dc=example,dc=com");
+        long entryCount = statistics.getEntryCount();
+
+        assertThat(ldapService.getAttributeValue(userContext, "dummy")).isNull();
+        assertThat(ldapService.getAttributeValue(userContext, "dummy")).isNull();
+        assertThat(statistics.getEntryCount()).isEqualTo(entryCount + 1);
+    }
+
+    @Test
+    public void streamTest() {
+        try (Stream<LdapUserContext> users = ldapService.streamUsers("(sn=jdoe)", "description")) {
+            assertThat(users.map(userContext -> ldapService.getAttributeValue(userContext, "description"))).containsExactly("Utilisateur");
+        }
+        try (Stream<String> groups = ldapService.streamGroups(null)) {
+            assertThat(groups.collect(Collectors.toList())).contains("SEED.JEDI");
+        }
+    }
+
+    @Test
+    public void groupMembersTest() {
+        assertThat(ldapService.streamGroupMembers("SEED.JEDI")).containsExactly("cn=John Doe - 123456,ou=people,dc=example,dc=com");
+        assertThat(ldapService.streamGroupMemberUsers("SEED.JEDI", "sn").map(userContext -> ldapService.getAttributeValue(userContext, "sn"))).containsExactly("jdoe");
+    }
+
     @Test(expected = IncorrectCredentialsException.class)
     public void wrongPasswordTest() {
         ThreadContext.bind(securityManager);
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.SeedException;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+
+import javax.inject.Inject;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapReplicaIT {
+    private static final String REPLICA = "seedstack.config.security.ldap.replica.";
+    private static final String[] PROPERTIES = {"enabled", "syncMode", "pollingInterval", "fullReloadInterval", "maxStaleness"};
+    private static final String JEDI_DN = "cn=SEED.JEDI,ou=groups,dc=example,dc=com";
+    private static final String LUKE_DN = "cn=Luke Skywalker,ou=people,dc=example,dc=com";
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private LdapMetrics ldapMetrics;
+
+    @BeforeKernel
+    public static void enableReplica() {
+        System.setProperty(REPLICA + "enabled", "true");
+        System.setProperty(REPLICA + "syncMode", "POLLING");
+        System.setProperty(REPLICA + "pollingInterval", "1");
+        System.setProperty(REPLICA + "fullReloadInterval", "3");
+        System.setProperty(REPLICA + "maxStaleness", "5");
+    }
+
+    @AfterKernel
+    public static void disableReplica() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(REPLICA + property);
+        }
+    }
+
+    @Test
+    public void initialLoadTest() {
+        LdapUserContext userContext = ldapService.findUser("jdoe", "login");
+        assertThat(userContext.getDn()).isEqualTo("cn=John Doe - 123456,ou=people,dc=example,dc=com");
+        assertThat(ldapService.getAttributeValue(userContext, "description")).isEqualTo("Utilisateur");
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI");
+    }
+
+    @Test
+    public void servedFromReplicaTest() {
+        // directory searches are the only way to add entries to the operation statistics
+        long userEntries = ldapMetrics.getOperationStatistics(LdapMetrics.FIND_USER).getEntryCount();
+        long groupEntries = ldapMetrics.getOperationStatistics(LdapMetrics.RETRIEVE_USER_GROUPS).getEntryCount();
+        LdapUserContext userContext = ldapService.findUser("jdoe");
+        assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI");
+        assertThat(ldapMetrics.getOperationStatistics(LdapMetrics.FIND_USER).getEntryCount()).isEqualTo(userEntries);
+        assertThat(ldapMetrics.getOperationStatistics(LdapMetrics.RETRIEVE_USER_GROUPS).getEntryCount()).isEqualTo(groupEntries);
+    }
+
+    @Test
+    public void pollingTest() throws LDAPException, InterruptedException {
+        LDAPConnection connection = new LDAPConnection("localhost", 53800, "cn=admin,ou=people,dc=example,dc=com", "admin");
+        try {
+            connection.add(new Entry(LUKE_DN, new Attribute("objectClass", "person"), new Attribute("cn", "Luke Skywalker"), new Attribute("sn", "lskywalker")));
+            connection.modify(JEDI_DN, new Modification(ModificationType.ADD, "member", LUKE_DN));
+            // the replica is authoritative for user existence, so the new user is only found once polled
+            LdapUserContext userContext = await(() -> ldapService.findUser("lskywalker"));
+            assertThat(userContext.getDn()).isEqualToIgnoringCase(LUKE_DN);
+            assertThat(ldapService.retrieveUserGroups(userContext)).containsOnly("SEED.JEDI");
+
+            connection.delete(LUKE_DN);
+            // deletions are only seen by full reloads, which occur within the maximum staleness
+            awaitUnknown("lskywalker");
+        } finally {
+            connection.modify(JEDI_DN, new Modification(ModificationType.DELETE, "member", LUKE_DN));
+            connection.close();
+        }
+    }
+
+    private void awaitUnknown(String user) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                ldapService.findUser(user);
+            } catch (SeedException e) {
+                assertThat(e.getErrorCode().toString()).isEqualTo("UNKNOWN_USER");
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                fail("user " + user + " still found after its deletion");
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    private static <T> T await(Supplier<T> lookup) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                return lookup.get();
+            } catch (SeedException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
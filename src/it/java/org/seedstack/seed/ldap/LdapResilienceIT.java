@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.seed.ldap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.seedstack.ldap.AsyncLdapService;
+import org.seedstack.ldap.LdapService;
+import org.seedstack.ldap.LdapUserContext;
+import org.seedstack.seed.SeedException;
+import org.seedstack.seed.it.AfterKernel;
+import org.seedstack.seed.it.BeforeKernel;
+import org.seedstack.seed.it.SeedITRunner;
+import org.seedstack.seed.it.WithPlugins;
+import org.seedstack.seed.security.SecuritySupport;
+import org.seedstack.seed.security.WithUser;
+
+import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+@RunWith(SeedITRunner.class)
+@WithPlugins(LdapITPlugin.class)
+public class LdapResilienceIT {
+    private static final String LDAP = "seedstack.config.security.ldap.";
+    private static final String[] PROPERTIES = {"circuitBreaker.enabled", "circuitBreaker.failureThreshold", "bulkhead.enabled"};
+    @Inject
+    private SecuritySupport securitySupport;
+    @Inject
+    private LdapService ldapService;
+    @Inject
+    private AsyncLdapService asyncLdapService;
+
+    @BeforeKernel
+    public static void enableResilience() {
+        System.setProperty(LDAP + "circuitBreaker.enabled", "true");
+        System.setProperty(LDAP + "circuitBreaker.failureThreshold", "1");
+        System.setProperty(LDAP + "bulkhead.enabled", "true");
+    }
+
+    @AfterKernel
+    public static void disableResilience() {
+        for (String property : PROPERTIES) {
+            System.clearProperty(LDAP + property);
+        }
+    }
+
+    @Test
+    @WithUser(id = "jdoe", password = "password")
+    public void rolesTest() {
+        assertThat(securitySupport.hasRole("jedi")).isTrue();
+        LdapUserContext userContext = securitySupport.getPrincipalsByType(LdapUserContext.class).iterator().next().getPrincipal();
+        assertThat(ldapService.getAttributeValue(userContext, "description")).isEqualTo("Utilisateur");
+    }
+
+    @Test
+    public void asyncTest() throws Exception {
+        LdapUserContext userContext = asyncLdapService.findUserAsync("jdoe").get();
+        asyncLdapService.authenticateAsync(userContext, "password").get();
+        assertThat(asyncLdapService.retrieveUserGroupsAsync(userContext).get()).containsExactly("SEED.JEDI");
+    }
+
+    @Test
+    public void circuitBreakerTest() {
+        // errors returned by a working directory must not open the circuit, which opens on the first failure here
+        try {
+            ldapService.authenticate(ldapService.findUser("jdoe"), "dummy");
+            fail("should have failed");
+        } catch (SeedException e) {
+            assertThat(ldapService.findUsers(Arrays.asList("nobody", "jdoe"))).containsOnlyKeys("jdoe");
+        }
+        try (Stream<String> groups = ldapService.streamGroups(null)) {
+            assertThat(groups.collect(Collectors.toList())).contains("SEED.JEDI");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link LdapService}. Searches are sent as asynchronous LDAP requests, so many of them can be in
+ * flight on the same connection without holding a thread each. Futures are failed with the same exceptions as the ones thrown
+ * by {@link LdapService}.
+ * <p>
+ * Searches are completed by the LDAP connection reader thread: blocking work should not be chained on the returned futures
+ * with non-async methods like {@link CompletableFuture#thenApply(java.util.function.Function)}.
+ * </p>
+ */
+public interface AsyncLdapService {
+
+    /**
+     * Asynchronously finds a user based on the value of its identifying attribute. See {@link LdapService#findUser(String)}.
+     *
+     * @param identityAttributeValue the value of the identifying attribute to search
+     * @return a future of the user context corresponding to the attribute value.
+     */
+    CompletableFuture<LdapUserContext> findUserAsync(String identityAttributeValue);
+
+    /**
+     * Asynchronously finds a user based on the value of its identifying attribute, retrieving the attributes of the given
+     * prefetch profile. See {@link LdapService#findUser(String, String)}.
+     *
+     * @param identityAttributeValue the value of the identifying attribute to search
+     * @param prefetchProfile        the name of the prefetch profile
+     * @return a future of the user context corresponding to the attribute value.
+     */
+    CompletableFuture<LdapUserContext> findUserAsync(String identityAttributeValue, String prefetchProfile);
+
+    /**
+     * Asynchronously authenticates a user with its context. As the LDAP protocol doesn't allow concurrent binds on a connection,
+     * the bind is done on a dedicated thread pool sized according to the authentication connections.
+     *
+     * @param userContext the context of a user
+     * @param password    the password of the user
+     * @return a future completed when the user is authenticated.
+     */
+    CompletableFuture<Void> authenticateAsync(LdapUserContext userContext, String password);
+
+    /**
+     * Asynchronously gives the values of the attribute names passed as parameters. Attributes already known by the user context
+     * are not requested again. See {@link LdapService#getAttributeValues(LdapUserContext, String...)}.
+     *
+     * @param userContext the user context used
+     * @param attributes  the names of the attributes
+     * @return a future of the values of the attributes as a map.
+     */
+    CompletableFuture<Map<String, String>> getAttributeValuesAsync(LdapUserContext userContext, String... attributes);
+
+    /**
+     * Asynchronously finds all the groups in which the user is defined as a member. See
+     * {@link LdapService#retrieveUserGroups(LdapUserContext)}.
+     *
+     * @param userContext the userContext to use
+     * @return a future of the groups as a set of the groups CNs
+     */
+    CompletableFuture<Set<String>> retrieveUserGroupsAsync(LdapUserContext userContext);
+}
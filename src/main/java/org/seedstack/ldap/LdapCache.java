@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+/**
+ * A cache used by the LDAP add-on, created by an {@link LdapCacheProvider}. Implementations must be thread-safe and are
+ * responsible for the expiration of entries after the time-to-live of the cache configuration.
+ *
+ * @param <V> the type of cached values
+ */
+public interface LdapCache<V> extends LdapCacheStatistics {
+    /**
+     * Looks up a valid entry of the cache.
+     *
+     * @param key the key of the entry
+     * @return the cached value, or null if there is no valid entry for this key
+     */
+    V get(String key);
+
+    /**
+     * Adds or replaces an entry of the cache.
+     *
+     * @param key   the key of the entry
+     * @param value the value to cache
+     */
+    void put(String key, V value);
+
+    /**
+     * Adds or replaces an entry of the cache expiring after its own time-to-live, for values retrieved some time before being
+     * cached. The default implementation doesn't cache the value, as not all caches can expire entries individually.
+     *
+     * @param key       the key of the entry
+     * @param value     the value to cache
+     * @param ttlMillis the time-to-live of the entry in milliseconds
+     */
+    default void put(String key, V value, long ttlMillis) {
+    }
+
+    /**
+     * Removes a single entry from the cache.
+     *
+     * @param key the key of the entry to remove
+     */
+    void invalidate(String key);
+
+    /**
+     * Removes all the entries of the cache.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+import java.util.Set;
+
+/**
+ * Gives access to the caches used by the LDAP add-on to avoid directory round trips. Allows to invalidate cached data when it
+ * is known to be stale and to monitor cache efficiency.
+ */
+public interface LdapCacheManager {
+    /**
+     * The name of the cache holding the group memberships of users, keyed by user DN.
+     */
+    String USER_GROUPS = "user-groups";
+    /**
+     * The name of the cache holding found users (DN and attributes retrieved with the search), keyed by identifying attribute value.
+     */
+    String USERS = "users";
+    /**
+     * The name of the cache holding the attributes of users retrieved after the user search, keyed by user DN.
+     */
+    String USER_ATTRIBUTES = "user-attributes";
+    /**
+     * The name of the cache holding identities that were not found in the directory, keyed by identifying attribute value.
+     */
+    String UNKNOWN_USERS = "unknown-users";
+    /**
+     * The name of the cache holding the verified credentials of recently authenticated users, keyed by identifying attribute value.
+     */
+    String CREDENTIALS = "credentials";
+    /**
+     * The name of the cache holding the roles and permissions resolved from each distinct set of groups, keyed by group set fingerprint.
+     */
+    String ROLES = "roles";
+
+    /**
+     * Gives the names of all the caches managed by this manager.
+     *
+     * @return the cache names
+     */
+    Set<String> getCacheNames();
+
+    /**
+     * Gives the usage statistics of a cache.
+     *
+     * @param cacheName the name of the cache
+     * @return the statistics of the cache
+     */
+    LdapCacheStatistics getStatistics(String cacheName);
+
+    /**
+     * Removes a single entry from a cache.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the key of the entry to remove
+     */
+    void invalidate(String cacheName, String key);
+
+    /**
+     * Removes all the entries of a cache.
+     *
+     * @param cacheName the name of the cache
+     */
+    void invalidateAll(String cacheName);
+
+    /**
+     * Removes all the entries of all the caches.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+/**
+ * Creates the caches of users, unknown users, user attributes and group memberships. The provider is chosen with the
+ * {@code security.ldap.cacheProvider} configuration and must have a public no-argument constructor. Without one, caches are
+ * held in the memory of each application instance.
+ * <p>
+ * A provider backed by a shared store lets all the instances of an application use the same cached data. Cached values are
+ * serializable and caches are asked for only when they are enabled in the configuration.
+ */
+public interface LdapCacheProvider {
+    /**
+     * Creates a cache.
+     *
+     * @param name        the name of the cache, one of the names of {@link LdapCacheManager}
+     * @param cacheConfig the configuration of the cache
+     * @param <V>         the type of cached values
+     * @return the cache
+     */
+    <V> LdapCache<V> createCache(String name, LdapConfig.CacheConfig cacheConfig);
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+/**
+ * Gives the usage statistics of an LDAP cache. Values are counted since the cache creation.
+ */
+public interface LdapCacheStatistics {
+
+    /**
+     * The name of the cache.
+     *
+     * @return the cache name
+     */
+    String getName();
+
+    /**
+     * The number of lookups that found a valid entry in the cache.
+     *
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * The number of lookups that did not find a valid entry in the cache, including expired entries.
+     *
+     * @return the miss count
+     */
+    long getMissCount();
+
+    /**
+     * The number of entries that were discarded because the cache was full or because they expired, as far as the cache can
+     * observe it.
+     *
+     * @return the eviction count
+     */
+    long getEvictionCount();
+
+    /**
+     * The number of entries currently held by the cache, possibly including expired entries not yet discarded.
+     *
+     * @return the cache size, or -1 if the cache cannot give it cheaply
+     */
+    int getSize();
+
+    /**
+     * The ratio of hits over lookups.
+     *
+     * @return the hit rate between 0 and 1, or 0 if no lookup has been done yet.
+     */
+    double getHitRate();
+}
@@ -14,29 +14,61 @@ import org.seedstack.coffig.SingleValue;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Config("security.ldap")
 public class LdapConfig {
     private static final int DEFAULT_PORT = 389;
     private static final int DEFAULT_CONNECTION_NUMBER = 8;
-    @NotBlank
+    private static final int DEFAULT_AUTHENTICATION_CONNECTION_NUMBER = 4;
+    private static final int DEFAULT_PAGE_SIZE = 500;
     private String host;
     @NotNull
+    private List<String> servers = new ArrayList<>();
+    @NotNull
+    private LoadBalancing loadBalancing = LoadBalancing.FAILOVER;
+    @NotNull
+    private HealthCheckConfig healthCheck = new HealthCheckConfig();
+    @NotNull
+    private PoolConfig pool = new PoolConfig();
+    @NotNull
+    private StartupConfig startup = new StartupConfig();
+    @NotNull
+    private TimeoutConfig timeout = new TimeoutConfig();
+    @NotNull
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+    @NotNull
+    private BulkheadConfig bulkhead = new BulkheadConfig();
+    @NotNull
     @Min(0)
     @Max(65535)
     private int port = DEFAULT_PORT;
     @Min(1)
     @NotNull
     private int connectionNumber = DEFAULT_CONNECTION_NUMBER;
+    @Min(0)
+    @NotNull
+    private int authenticationConnectionNumber = DEFAULT_AUTHENTICATION_CONNECTION_NUMBER;
+    @Min(1)
+    private int pageSize = DEFAULT_PAGE_SIZE;
     private String bindDN;
     private String bindPassword;
+    private Class<? extends LdapCacheProvider> cacheProvider;
     @NotNull
     private UserConfig user = new UserConfig();
     @NotNull
     private GroupConfig group = new GroupConfig();
+    @NotNull
+    private ReplicaConfig replica = new ReplicaConfig();
+    @NotNull
+    private SnapshotConfig snapshot = new SnapshotConfig();
 
     public String getHost() {
         return host;
@@ -47,6 +79,48 @@ public class LdapConfig {
         return this;
     }
 
+    public List<String> getServers() {
+        return Collections.unmodifiableList(servers);
+    }
+
+    public LdapConfig addServer(String server) {
+        this.servers.add(server);
+        return this;
+    }
+
+    public LoadBalancing getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public LdapConfig setLoadBalancing(LoadBalancing loadBalancing) {
+        this.loadBalancing = loadBalancing;
+        return this;
+    }
+
+    public HealthCheckConfig healthCheck() {
+        return healthCheck;
+    }
+
+    public PoolConfig pool() {
+        return pool;
+    }
+
+    public StartupConfig startup() {
+        return startup;
+    }
+
+    public TimeoutConfig timeout() {
+        return timeout;
+    }
+
+    public CircuitBreakerConfig circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public BulkheadConfig bulkhead() {
+        return bulkhead;
+    }
+
     public int getPort() {
         return port;
     }
@@ -65,6 +139,24 @@ public class LdapConfig {
         return this;
     }
 
+    public int getAuthenticationConnectionNumber() {
+        return authenticationConnectionNumber;
+    }
+
+    public LdapConfig setAuthenticationConnectionNumber(int authenticationConnectionNumber) {
+        this.authenticationConnectionNumber = authenticationConnectionNumber;
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public LdapConfig setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
     public String getBindDN() {
         return bindDN;
     }
@@ -83,6 +175,15 @@ public class LdapConfig {
         return this;
     }
 
+    public Class<? extends LdapCacheProvider> getCacheProvider() {
+        return cacheProvider;
+    }
+
+    public LdapConfig setCacheProvider(Class<? extends LdapCacheProvider> cacheProvider) {
+        this.cacheProvider = cacheProvider;
+        return this;
+    }
+
     public UserConfig user() {
         return user;
     }
@@ -91,9 +192,384 @@ public class LdapConfig {
         return group;
     }
 
+    public ReplicaConfig replica() {
+        return replica;
+    }
+
+    public SnapshotConfig snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The way connections are distributed among the configured servers.
+     */
+    public enum LoadBalancing {
+        /**
+         * Connects to the first available server in the configured order.
+         */
+        FAILOVER,
+        /**
+         * Connects to each server in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * Connects to the server with the fewest connections established by the application.
+         */
+        FEWEST_CONNECTIONS
+    }
+
+    public static class HealthCheckConfig {
+        private static final int DEFAULT_INTERVAL = 60;
+        private static final int DEFAULT_MAX_RESPONSE_TIME = 5000;
+        @Min(1)
+        private int interval = DEFAULT_INTERVAL;
+        @Min(1)
+        private int maxResponseTime = DEFAULT_MAX_RESPONSE_TIME;
+
+        public int getInterval() {
+            return interval;
+        }
+
+        public HealthCheckConfig setInterval(int interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public int getMaxResponseTime() {
+            return maxResponseTime;
+        }
+
+        public HealthCheckConfig setMaxResponseTime(int maxResponseTime) {
+            this.maxResponseTime = maxResponseTime;
+            return this;
+        }
+    }
+
+    public static class PoolConfig {
+        @Min(1)
+        private Integer initialSize;
+        private boolean growOnDemand = true;
+        @Min(0)
+        private long maxWaitTime = 0;
+        @Min(0)
+        private int maxConnectionAge = 0;
+        @Min(0)
+        private int idleTimeout = 0;
+
+        public Integer getInitialSize() {
+            return initialSize;
+        }
+
+        public PoolConfig setInitialSize(Integer initialSize) {
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        public boolean isGrowOnDemand() {
+            return growOnDemand;
+        }
+
+        public PoolConfig setGrowOnDemand(boolean growOnDemand) {
+            this.growOnDemand = growOnDemand;
+            return this;
+        }
+
+        public long getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        public PoolConfig setMaxWaitTime(long maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+            return this;
+        }
+
+        public int getMaxConnectionAge() {
+            return maxConnectionAge;
+        }
+
+        public PoolConfig setMaxConnectionAge(int maxConnectionAge) {
+            this.maxConnectionAge = maxConnectionAge;
+            return this;
+        }
+
+        public int getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public PoolConfig setIdleTimeout(int idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+    }
+
+    public static class TimeoutConfig {
+        private static final long DEFAULT_RESPONSE_TIME = 10000;
+        @Min(0)
+        private long responseTime = DEFAULT_RESPONSE_TIME;
+        @NotNull
+        private Map<String, Long> operations = new HashMap<>();
+
+        public long getResponseTime() {
+            return responseTime;
+        }
+
+        public TimeoutConfig setResponseTime(long responseTime) {
+            this.responseTime = responseTime;
+            return this;
+        }
+
+        public Map<String, Long> getOperations() {
+            return Collections.unmodifiableMap(operations);
+        }
+
+        /**
+         * @param operation the name of an operation, as measured by {@link LdapMetrics}.
+         * @return the maximum response time in milliseconds of the LDAP requests of the operation.
+         */
+        public long getResponseTime(String operation) {
+            Long operationResponseTime = operations.get(operation);
+            return operationResponseTime != null ? operationResponseTime : responseTime;
+        }
+
+        public TimeoutConfig setResponseTime(String operation, long responseTime) {
+            this.operations.put(operation, responseTime);
+            return this;
+        }
+    }
+
+    public static class CircuitBreakerConfig {
+        private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+        private static final long DEFAULT_LATENCY_THRESHOLD = 5000;
+        private static final int DEFAULT_OPEN_DURATION = 30;
+        private static final int DEFAULT_PROBE_NUMBER = 1;
+        private boolean enabled = false;
+        @Min(1)
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        @Min(0)
+        private long latencyThreshold = DEFAULT_LATENCY_THRESHOLD;
+        @Min(1)
+        private int openDuration = DEFAULT_OPEN_DURATION;
+        @Min(1)
+        private int probeNumber = DEFAULT_PROBE_NUMBER;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public CircuitBreakerConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public CircuitBreakerConfig setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public long getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public CircuitBreakerConfig setLatencyThreshold(long latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+            return this;
+        }
+
+        public int getOpenDuration() {
+            return openDuration;
+        }
+
+        public CircuitBreakerConfig setOpenDuration(int openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        public int getProbeNumber() {
+            return probeNumber;
+        }
+
+        public CircuitBreakerConfig setProbeNumber(int probeNumber) {
+            this.probeNumber = probeNumber;
+            return this;
+        }
+    }
+
+    public static class BulkheadConfig {
+        private static final long DEFAULT_MAX_WAIT = 5000;
+        private boolean enabled = false;
+        @Min(0)
+        private long maxWait = DEFAULT_MAX_WAIT;
+        @NotNull
+        private CompartmentConfig authentication = new CompartmentConfig().setReserved(2).setPriority(3);
+        @NotNull
+        private CompartmentConfig roles = new CompartmentConfig().setReserved(1).setPriority(2);
+        @NotNull
+        private CompartmentConfig attributes = new CompartmentConfig().setPriority(1);
+        @NotNull
+        private CompartmentConfig bulk = new CompartmentConfig().setMaxConcurrency(2);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public BulkheadConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public BulkheadConfig setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * @return the compartment of user lookups and binds done when users log in.
+         */
+        public CompartmentConfig authentication() {
+            return authentication;
+        }
+
+        /**
+         * @return the compartment of group membership retrievals.
+         */
+        public CompartmentConfig roles() {
+            return roles;
+        }
+
+        /**
+         * @return the compartment of user attribute retrievals.
+         */
+        public CompartmentConfig attributes() {
+            return attributes;
+        }
+
+        /**
+         * @return the compartment of multiple user lookups and streaming searches.
+         */
+        public CompartmentConfig bulk() {
+            return bulk;
+        }
+    }
+
+    public static class CompartmentConfig {
+        @Min(0)
+        private int reserved = 0;
+        @Min(0)
+        private int maxConcurrency = 0;
+        private int priority = 0;
+
+        public int getReserved() {
+            return reserved;
+        }
+
+        public CompartmentConfig setReserved(int reserved) {
+            this.reserved = reserved;
+            return this;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public CompartmentConfig setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public CompartmentConfig setPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+    }
+
+    /**
+     * The way the connection to the directory is established when the application starts.
+     */
+    public enum StartupMode {
+        /**
+         * Connection pools are created during the kernel startup, which fails if the directory cannot be reached.
+         */
+        EAGER,
+        /**
+         * Connection pools are created and warmed up in the background, retrying until the directory can be reached.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * The way the groups of a user are resolved.
+     */
+    public enum MembershipResolution {
+        /**
+         * Reads the memberOf attribute of users when the directory maintains it, or searches the groups otherwise.
+         */
+        AUTO,
+        /**
+         * Reads the memberOf attribute of users, along with the user search when possible.
+         */
+        MEMBER_OF,
+        /**
+         * Searches the groups having the user as member.
+         */
+        SEARCH
+    }
+
+    public static class StartupConfig {
+        private static final int DEFAULT_RETRY_INTERVAL = 10;
+        @NotNull
+        private StartupMode mode = StartupMode.EAGER;
+        @Min(0)
+        private long maxWait = 0;
+        @Min(1)
+        private int retryInterval = DEFAULT_RETRY_INTERVAL;
+
+        public StartupMode getMode() {
+            return mode;
+        }
+
+        public StartupConfig setMode(StartupMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public long getMaxWait() {
+            return maxWait;
+        }
+
+        public StartupConfig setMaxWait(long maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        public int getRetryInterval() {
+            return retryInterval;
+        }
+
+        public StartupConfig setRetryInterval(int retryInterval) {
+            this.retryInterval = retryInterval;
+            return this;
+        }
+    }
+
     @Config("user")
     public static class UserConfig {
         private static final String USER_ID_DEFAULT_ATTRIBUTE = "uid";
+        private static final int DEFAULT_NEGATIVE_CACHE_TTL = 30;
+        private static final int DEFAULT_BATCH_SIZE = 100;
+        private static final int DEFAULT_CREDENTIAL_CACHE_TTL = 60;
+        private static final int DEFAULT_CREDENTIAL_CACHE_MAX_SIZE = 1000;
         @NotBlank
         @SingleValue
         private String baseDN;
@@ -101,8 +577,19 @@ public class LdapConfig {
         private String idAttribute = USER_ID_DEFAULT_ATTRIBUTE;
         @NotNull
         private Set<String> additionalAttributes = new HashSet<>();
+        @NotNull
+        private Map<String, Set<String>> prefetchProfiles = new HashMap<>();
         private String objectClass;
-
+        @Min(1)
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        @NotNull
+        private CacheConfig cache = new CacheConfig();
+        @NotNull
+        private CacheConfig attributeCache = new CacheConfig();
+        @NotNull
+        private CacheConfig negativeCache = new CacheConfig().setTtl(DEFAULT_NEGATIVE_CACHE_TTL);
+        @NotNull
+        private CacheConfig credentialCache = new CacheConfig().setTtl(DEFAULT_CREDENTIAL_CACHE_TTL).setMaxSize(DEFAULT_CREDENTIAL_CACHE_MAX_SIZE);
 
         public String getBaseDN() {
             return baseDN;
@@ -131,6 +618,23 @@ public class LdapConfig {
             return this;
         }
 
+        public Map<String, Set<String>> getPrefetchProfiles() {
+            return Collections.unmodifiableMap(prefetchProfiles);
+        }
+
+        public Set<String> getPrefetchProfile(String name) {
+            Set<String> attributes = prefetchProfiles.get(name);
+            return attributes == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(attributes);
+        }
+
+        public UserConfig addPrefetchAttribute(String profile, String attribute) {
+            if (!this.prefetchProfiles.containsKey(profile)) {
+                this.prefetchProfiles.put(profile, new LinkedHashSet<String>());
+            }
+            this.prefetchProfiles.get(profile).add(attribute);
+            return this;
+        }
+
         public String getObjectClass() {
             return objectClass;
         }
@@ -139,17 +643,53 @@ public class LdapConfig {
             this.objectClass = objectClass;
             return this;
         }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public UserConfig setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public CacheConfig cache() {
+            return cache;
+        }
+
+        public CacheConfig attributeCache() {
+            return attributeCache;
+        }
+
+        public CacheConfig negativeCache() {
+            return negativeCache;
+        }
+
+        public CacheConfig credentialCache() {
+            return credentialCache;
+        }
     }
 
     @Config("group")
     public static class GroupConfig {
         private static final String GROUP_MEMBER_DEFAULT_ATTRIBUTE = "member";
+        private static final String USER_MEMBER_OF_DEFAULT_ATTRIBUTE = "memberOf";
         @NotBlank
         @SingleValue
         private String baseDN;
         @NotBlank
         private String memberAttribute = GROUP_MEMBER_DEFAULT_ATTRIBUTE;
+        @NotBlank
+        private String memberOfAttribute = USER_MEMBER_OF_DEFAULT_ATTRIBUTE;
+        @NotNull
+        private MembershipResolution membershipResolution = MembershipResolution.AUTO;
         private String objectClass;
+        @NotNull
+        private CacheConfig cache = new CacheConfig();
+        @NotNull
+        private CacheConfig roleCache = new CacheConfig();
+        @NotNull
+        private NestedGroupsConfig nested = new NestedGroupsConfig();
 
         public String getBaseDN() {
             return baseDN;
@@ -169,6 +709,24 @@ public class LdapConfig {
             return this;
         }
 
+        public String getMemberOfAttribute() {
+            return memberOfAttribute;
+        }
+
+        public GroupConfig setMemberOfAttribute(String memberOfAttribute) {
+            this.memberOfAttribute = memberOfAttribute;
+            return this;
+        }
+
+        public MembershipResolution getMembershipResolution() {
+            return membershipResolution;
+        }
+
+        public GroupConfig setMembershipResolution(MembershipResolution membershipResolution) {
+            this.membershipResolution = membershipResolution;
+            return this;
+        }
+
         public String getObjectClass() {
             return objectClass;
         }
@@ -177,5 +735,246 @@ public class LdapConfig {
             this.objectClass = objectClass;
             return this;
         }
+
+        public CacheConfig cache() {
+            return cache;
+        }
+
+        public CacheConfig roleCache() {
+            return roleCache;
+        }
+
+        public NestedGroupsConfig nested() {
+            return nested;
+        }
+    }
+
+    public static class NestedGroupsConfig {
+        private static final int DEFAULT_REFRESH_INTERVAL = 300;
+        private boolean enabled = false;
+        @Min(1)
+        private int refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public NestedGroupsConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public int getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public NestedGroupsConfig setRefreshInterval(int refreshInterval) {
+            this.refreshInterval = refreshInterval;
+            return this;
+        }
+    }
+
+    @Config("replica")
+    public static class ReplicaConfig {
+        private static final int DEFAULT_POLLING_INTERVAL = 60;
+        private static final int DEFAULT_FULL_RELOAD_INTERVAL = 300;
+        private static final int DEFAULT_MAX_STALENESS = 300;
+        private boolean enabled = false;
+        @NotNull
+        private ReplicaSyncMode syncMode = ReplicaSyncMode.AUTO;
+        @Min(1)
+        private int pollingInterval = DEFAULT_POLLING_INTERVAL;
+        @Min(1)
+        private int fullReloadInterval = DEFAULT_FULL_RELOAD_INTERVAL;
+        @Min(1)
+        private int maxStaleness = DEFAULT_MAX_STALENESS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public ReplicaConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public ReplicaSyncMode getSyncMode() {
+            return syncMode;
+        }
+
+        public ReplicaConfig setSyncMode(ReplicaSyncMode syncMode) {
+            this.syncMode = syncMode;
+            return this;
+        }
+
+        public int getPollingInterval() {
+            return pollingInterval;
+        }
+
+        public ReplicaConfig setPollingInterval(int pollingInterval) {
+            this.pollingInterval = pollingInterval;
+            return this;
+        }
+
+        public int getFullReloadInterval() {
+            return fullReloadInterval;
+        }
+
+        public ReplicaConfig setFullReloadInterval(int fullReloadInterval) {
+            this.fullReloadInterval = fullReloadInterval;
+            return this;
+        }
+
+        public int getMaxStaleness() {
+            return maxStaleness;
+        }
+
+        public ReplicaConfig setMaxStaleness(int maxStaleness) {
+            this.maxStaleness = maxStaleness;
+            return this;
+        }
+    }
+
+    public static class SnapshotConfig {
+        private static final int DEFAULT_WRITE_INTERVAL = 300;
+        private static final int DEFAULT_MAX_AGE = 86400;
+        private static final int DEFAULT_MAX_SIZE = 100000;
+        private boolean enabled = false;
+        private String path;
+        @Min(1)
+        private int writeInterval = DEFAULT_WRITE_INTERVAL;
+        @Min(1)
+        private int maxAge = DEFAULT_MAX_AGE;
+        @Min(1)
+        private int maxSize = DEFAULT_MAX_SIZE;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public SnapshotConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public SnapshotConfig setPath(String path) {
+            this.path = path;
+            return this;
+        }
+
+        public int getWriteInterval() {
+            return writeInterval;
+        }
+
+        public SnapshotConfig setWriteInterval(int writeInterval) {
+            this.writeInterval = writeInterval;
+            return this;
+        }
+
+        public int getMaxAge() {
+            return maxAge;
+        }
+
+        public SnapshotConfig setMaxAge(int maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public SnapshotConfig setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+    }
+
+    /**
+     * The way an in-memory replica of the directory is kept up to date.
+     */
+    public enum ReplicaSyncMode {
+        /**
+         * Chooses the best mode supported by the directory, in the order of this enumeration.
+         */
+        AUTO,
+        /**
+         * Receives changes as they happen with the content synchronization control (RFC 4533).
+         */
+        CONTENT_SYNC,
+        /**
+         * Receives changes as they happen with the persistent search control.
+         */
+        PERSISTENT_SEARCH,
+        /**
+         * Periodically searches for entries modified since the last synchronization. Deletions are only detected by full reloads.
+         */
+        POLLING
+    }
+
+    public static class CacheConfig {
+        private static final int DEFAULT_TTL = 300;
+        private static final int DEFAULT_MAX_SIZE = 10000;
+        private boolean enabled = false;
+        @Min(0)
+        private int ttl = DEFAULT_TTL;
+        @Min(1)
+        private int maxSize = DEFAULT_MAX_SIZE;
+        @NotNull
+        private EvictionPolicy eviction = EvictionPolicy.LRU;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public CacheConfig setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        public int getTtl() {
+            return ttl;
+        }
+
+        public CacheConfig setTtl(int ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public CacheConfig setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public EvictionPolicy getEviction() {
+            return eviction;
+        }
+
+        public CacheConfig setEviction(EvictionPolicy eviction) {
+            this.eviction = eviction;
+            return this;
+        }
+    }
+
+    /**
+     * The policy used to choose which entry to discard when a cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Discards the least recently used entry.
+         */
+        LRU,
+        /**
+         * Discards the least frequently used entry (the least recently used one among ties).
+         */
+        LFU
     }
 }
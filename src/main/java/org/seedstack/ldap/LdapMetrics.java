@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+import java.util.Set;
+
+/**
+ * Gives access to the metrics of LDAP operations and connection pools, so they can be monitored or published to a metrics
+ * registry by the application.
+ */
+public interface LdapMetrics {
+    /**
+     * The name of the user lookup operation.
+     */
+    String FIND_USER = "findUser";
+    /**
+     * The name of the batch user lookup operation.
+     */
+    String FIND_USERS = "findUsers";
+    /**
+     * The name of the user authentication operation.
+     */
+    String AUTHENTICATE = "authenticate";
+    /**
+     * The name of the user attributes retrieval operation.
+     */
+    String GET_ATTRIBUTE_VALUES = "getAttributeValues";
+    /**
+     * The name of the user groups retrieval operation.
+     */
+    String RETRIEVE_USER_GROUPS = "retrieveUserGroups";
+    /**
+     * The name of the operation retrieving one page of streamed users, groups or group members.
+     */
+    String SEARCH_PAGE = "searchPage";
+    /**
+     * The name of the connection pool used for searches.
+     */
+    String MAIN_POOL = "ldap";
+    /**
+     * The name of the connection pool dedicated to user authentication, when enabled.
+     */
+    String AUTHENTICATION_POOL = "ldap-authentication";
+
+    /**
+     * Gives the names of all the measured operations.
+     *
+     * @return the operation names
+     */
+    Set<String> getOperationNames();
+
+    /**
+     * Gives the metrics of an operation, including its synchronous and asynchronous variants.
+     *
+     * @param operationName the name of the operation
+     * @return the statistics of the operation
+     */
+    LdapOperationStatistics getOperationStatistics(String operationName);
+
+    /**
+     * Gives the names of all the connection pools.
+     *
+     * @return the pool names
+     */
+    Set<String> getPoolNames();
+
+    /**
+     * Gives the statistics of a connection pool.
+     *
+     * @param poolName the name of the pool
+     * @return the statistics of the pool
+     */
+    LdapPoolStatistics getPoolStatistics(String poolName);
+
+    /**
+     * Resets all the operation and pool counters.
+     */
+    void reset();
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Gives the metrics of an LDAP operation. Values are counted since the add-on startup or the last reset. Latencies are
+ * expressed in milliseconds.
+ */
+public interface LdapOperationStatistics {
+    /**
+     * The name of the operation.
+     *
+     * @return the operation name
+     */
+    String getName();
+
+    /**
+     * The number of invocations, successful or not.
+     *
+     * @return the invocation count
+     */
+    long getCount();
+
+    /**
+     * The number of failed invocations.
+     *
+     * @return the error count
+     */
+    long getErrorCount();
+
+    /**
+     * The number of failed invocations by LDAP result code name (like 'invalid credentials' or 'no such object'). Failures
+     * which are not caused by the directory are counted under 'other'.
+     *
+     * @return the error counts
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * The number of entries returned by the directory to this operation. Invocations answered from a cache or a replica
+     * return no entry.
+     *
+     * @return the entry count
+     */
+    long getEntryCount();
+
+    /**
+     * The mean latency of invocations.
+     *
+     * @return the mean latency, or 0 if the operation has not been invoked yet.
+     */
+    double getMeanLatency();
+
+    /**
+     * The highest latency of invocations.
+     *
+     * @return the max latency
+     */
+    double getMaxLatency();
+
+    /**
+     * The latency under which the given proportion of invocations completed, as the upper bound of the corresponding
+     * histogram bucket.
+     *
+     * @param quantile the proportion of invocations between 0 and 1 (like 0.99 for the 99th percentile)
+     * @return the latency percentile, or 0 if the operation has not been invoked yet.
+     */
+    double getLatencyPercentile(double quantile);
+
+    /**
+     * The latency histogram, as the number of invocations by bucket upper bound. Buckets bounds double from one bucket to
+     * the next, starting at one microsecond. Empty buckets are omitted.
+     *
+     * @return the latency histogram
+     */
+    SortedMap<Double, Long> getLatencyHistogram();
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap;
+
+/**
+ * Gives the statistics of an LDAP connection pool. Values are counted since the pool creation or the last reset.
+ */
+public interface LdapPoolStatistics {
+    /**
+     * The name of the pool.
+     *
+     * @return the pool name
+     */
+    String getName();
+
+    /**
+     * The number of connections successfully checked out of the pool.
+     *
+     * @return the checkout count
+     */
+    long getCheckoutCount();
+
+    /**
+     * The number of checkouts that had to wait for a connection to be released.
+     *
+     * @return the waiting checkout count
+     */
+    long getWaitingCheckoutCount();
+
+    /**
+     * The number of checkouts that had to open a new connection because none was available.
+     *
+     * @return the new connection checkout count
+     */
+    long getNewConnectionCheckoutCount();
+
+    /**
+     * The number of checkouts that failed to obtain a connection.
+     *
+     * @return the failed checkout count
+     */
+    long getFailedCheckoutCount();
+
+    /**
+     * The number of connections successfully opened.
+     *
+     * @return the created connection count
+     */
+    long getCreatedConnectionCount();
+
+    /**
+     * The number of failed connection attempts.
+     *
+     * @return the failed connection count
+     */
+    long getFailedConnectionCount();
+
+    /**
+     * The number of connections closed because they were defunct, too old or not needed anymore.
+     *
+     * @return the closed connection count
+     */
+    long getClosedConnectionCount();
+
+    /**
+     * The number of connections currently available in the pool.
+     *
+     * @return the available connection count
+     */
+    int getAvailableConnections();
+
+    /**
+     * The maximum number of connections kept available in the pool.
+     *
+     * @return the max available connection count
+     */
+    int getMaxAvailableConnections();
+
+    /**
+     * The time requests of the LDAP service waited for a connection of the pool, from the moment they were ready to be sent to
+     * the checkout of a connection. Operations without a latency, like background loads, are not measured.
+     *
+     * @return the statistics of checkout waits, whose latencies are the wait times
+     */
+    LdapOperationStatistics getCheckoutWait();
+}
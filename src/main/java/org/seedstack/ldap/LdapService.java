@@ -7,14 +7,20 @@
  */
 package org.seedstack.ldap;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Convenient interface to interact with an LDAP with user issues in mind. This interface makes use of the UserContext object. Use the
  * createUserContext or findUser methods to get a userContext instance.
  */
 public interface LdapService {
+    /**
+     * The name of the prefetch profile used when a user logs in through the security realm.
+     */
+    String LOGIN_PROFILE = "login";
 
     /**
      * Creates a new DefaultLDAPUserContext knowing the dn of the user. Note that this method does not make an LDAP call.
@@ -26,13 +32,48 @@ public interface LdapService {
 
     /**
      * Creates a new DefaultLDAPUserContext based on the identifying attribute of the user. The identifying attribute is the one defined in the
-     * configuration (uid by default).
+     * configuration (uid by default). When the user caches are enabled (see {@link LdapCacheManager#USERS} and
+     * {@link LdapCacheManager#UNKNOWN_USERS}), known and unknown identities are resolved without calling the LDAP.
      *
      * @param identityAttributeValue the value of the identifying attribute to search
      * @return the DefaultLDAPUserContext corresponding to the attribute value.
      */
     LdapUserContext findUser(String identityAttributeValue);
 
+    /**
+     * Creates a new DefaultLDAPUserContext based on the identifying attribute of the user, retrieving the attributes of the
+     * given prefetch profile (see {@link org.seedstack.ldap.LdapConfig.UserConfig#getPrefetchProfiles()}) with the same LDAP
+     * call. Subsequent calls to {@link #getAttributeValue(LdapUserContext, String)} for these attributes don't call the LDAP.
+     * A profile that is not configured only retrieves the additional attributes.
+     *
+     * @param identityAttributeValue the value of the identifying attribute to search
+     * @param prefetchProfile        the name of the prefetch profile
+     * @return the DefaultLDAPUserContext corresponding to the attribute value.
+     */
+    LdapUserContext findUser(String identityAttributeValue, String prefetchProfile);
+
+    /**
+     * Finds multiple users at once based on their identifying attribute. Users are searched by chunks of the configured batch
+     * size (100 by default) with one LDAP call per chunk. Identities that don't match exactly one user are absent from the result.
+     *
+     * @param identityAttributeValues the values of the identifying attribute to search
+     * @param attributes              the names of the attributes to retrieve along with the users
+     * @return the found user contexts, by identifying attribute value.
+     */
+    Map<String, LdapUserContext> findUsers(Collection<String> identityAttributeValues, String... attributes);
+
+    /**
+     * Streams the users matching a filter. Users are retrieved by pages of the configured page size (500 by default) with the
+     * simple paged results control, so large directories can be enumerated with constant memory and without hitting server size
+     * limits. The stream holds an LDAP connection until it is fully consumed or closed, so it should be used in a
+     * try-with-resources statement.
+     *
+     * @param filter     an LDAP filter restricting the users (like '(department=sales)'), or null to stream all users
+     * @param attributes the names of the attributes to retrieve along with the users
+     * @return the stream of user contexts.
+     */
+    Stream<LdapUserContext> streamUsers(String filter, String... attributes);
+
     /**
      * Authenticates a user with its context
      *
@@ -62,10 +103,40 @@ public interface LdapService {
     Map<String, String> getAttributeValues(LdapUserContext userContext, String... attributes);
 
     /**
-     * Finds all the groups in which the user is defined as a member. Note that this method will effectively call the LDAP each time it is executed.
+     * Finds all the groups in which the user is defined as a member. Note that this method will effectively call the LDAP each time it is executed,
+     * unless the group membership cache is enabled (see {@link LdapCacheManager#USER_GROUPS}). When nested groups are enabled, groups are
+     * resolved transitively from an in-memory copy of the groups, periodically refreshed, without calling the LDAP.
      *
      * @param userContext the userContext to use
      * @return the groups as a set of the groups CNs
      */
     Set<String> retrieveUserGroups(LdapUserContext userContext);
+
+    /**
+     * Streams the names (CNs) of the groups matching a filter. Like {@link #streamUsers(String, String...)}, groups are retrieved
+     * by pages and the stream should be closed when not fully consumed.
+     *
+     * @param filter an LDAP filter restricting the groups, or null to stream all groups
+     * @return the stream of group CNs.
+     */
+    Stream<String> streamGroups(String filter);
+
+    /**
+     * Streams the DNs of the members of a group. Members are read by ranges on servers limiting the number of values returned at
+     * once (like Active Directory), so groups with a very large number of members can be enumerated with bounded memory.
+     *
+     * @param group the name (CN) of the group
+     * @return the stream of member DNs.
+     */
+    Stream<String> streamGroupMembers(String group);
+
+    /**
+     * Streams the users that are members of a group. Member DNs are resolved to users by batches of the configured batch size
+     * with one LDAP call per batch. Members located outside of the user base DN, like nested groups, are skipped.
+     *
+     * @param group      the name (CN) of the group
+     * @param attributes the names of the attributes to retrieve along with the users
+     * @return the stream of user contexts.
+     */
+    Stream<LdapUserContext> streamGroupMemberUsers(String group, String... attributes);
 }
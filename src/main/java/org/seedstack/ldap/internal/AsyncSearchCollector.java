@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import org.seedstack.seed.SeedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects the entries of an asynchronous search and completes a future with the full search result. Callbacks are invoked
+ * by the connection reader thread, so no blocking work is done here.
+ */
+class AsyncSearchCollector implements AsyncSearchResultListener {
+    private static final long serialVersionUID = 1L;
+    private final transient CompletableFuture<SearchResult> future = new CompletableFuture<>();
+    private final List<SearchResultEntry> entries = new ArrayList<>();
+    private final List<SearchResultReference> references = new ArrayList<>();
+    private volatile boolean connectionUsable = true;
+
+    CompletableFuture<SearchResult> getFuture() {
+        return future;
+    }
+
+    /**
+     * Tells if the connection can be reused once the search is complete, which is not the case after a timeout or a
+     * connection failure.
+     *
+     * @return true if the connection can be released to its pool, false if it must be released as defunct.
+     */
+    boolean isConnectionUsable() {
+        return connectionUsable;
+    }
+
+    /**
+     * Fails the search when it could not be sent.
+     *
+     * @param e the exception thrown when sending the search.
+     */
+    void searchFailed(LDAPException e) {
+        connectionUsable = ResultCode.isConnectionUsable(e.getResultCode());
+        future.completeExceptionally(SeedException.wrap(e, LdapErrorCode.LDAP_ERROR));
+    }
+
+    @Override
+    public void searchEntryReturned(SearchResultEntry searchEntry) {
+        entries.add(searchEntry);
+    }
+
+    @Override
+    public void searchReferenceReturned(SearchResultReference searchReference) {
+        references.add(searchReference);
+    }
+
+    @Override
+    public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+        connectionUsable = ResultCode.isConnectionUsable(searchResult.getResultCode());
+        SearchResult completeResult = new SearchResult(
+                searchResult.getMessageID(),
+                searchResult.getResultCode(),
+                searchResult.getDiagnosticMessage(),
+                searchResult.getMatchedDN(),
+                searchResult.getReferralURLs(),
+                entries,
+                references,
+                entries.size(),
+                references.size(),
+                searchResult.getResponseControls()
+        );
+        if (ResultCode.SUCCESS.equals(searchResult.getResultCode())) {
+            future.complete(completeResult);
+        } else {
+            future.completeExceptionally(SeedException.wrap(new LDAPSearchException(completeResult), LdapErrorCode.LDAP_ERROR));
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.seed.SeedException;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Partitions the connections of the main pool between compartments of operations. A compartment can use its reserved
+ * connections and the shared ones (those not reserved by any other compartment), up to its maximum concurrency. Requests that
+ * cannot be admitted wait in a single queue, from which the highest priority admissible requests are admitted first as
+ * connections are released. Asynchronous requests wait without blocking their caller, their admission being completed by the
+ * release that makes room for them.
+ */
+class Bulkhead {
+    private static final Map<String, Compartment> COMPARTMENTS = new HashMap<>();
+    private final boolean enabled;
+    private final int capacity;
+    private final long maxWaitNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Compartment, Limits> limits = new EnumMap<>(Compartment.class);
+    private final Map<Compartment, Integer> inFlight = new EnumMap<>(Compartment.class);
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int totalInFlight;
+    private long arrivals;
+
+    static {
+        COMPARTMENTS.put(LdapMetrics.FIND_USER, Compartment.AUTHENTICATION);
+        COMPARTMENTS.put(LdapMetrics.AUTHENTICATE, Compartment.AUTHENTICATION);
+        COMPARTMENTS.put(LdapMetrics.RETRIEVE_USER_GROUPS, Compartment.ROLES);
+        COMPARTMENTS.put(LdapMetrics.GET_ATTRIBUTE_VALUES, Compartment.ATTRIBUTES);
+        COMPARTMENTS.put(LdapMetrics.FIND_USERS, Compartment.BULK);
+        COMPARTMENTS.put(LdapMetrics.SEARCH_PAGE, Compartment.BULK);
+    }
+
+    enum Compartment {
+        AUTHENTICATION,
+        ROLES,
+        ATTRIBUTES,
+        BULK
+    }
+
+    Bulkhead(LdapConfig.BulkheadConfig bulkheadConfig, int capacity, ScheduledExecutorService scheduler) {
+        this.enabled = bulkheadConfig.isEnabled();
+        this.capacity = capacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(bulkheadConfig.getMaxWait());
+        this.scheduler = scheduler;
+        this.limits.put(Compartment.AUTHENTICATION, new Limits(bulkheadConfig.authentication()));
+        this.limits.put(Compartment.ROLES, new Limits(bulkheadConfig.roles()));
+        this.limits.put(Compartment.ATTRIBUTES, new Limits(bulkheadConfig.attributes()));
+        this.limits.put(Compartment.BULK, new Limits(bulkheadConfig.bulk()));
+        int reserved = 0;
+        for (Compartment compartment : Compartment.values()) {
+            reserved += limits.get(compartment).reserved;
+            inFlight.put(compartment, 0);
+        }
+        if (enabled && reserved > capacity) {
+            throw SeedException.createNew(LdapErrorCode.INVALID_BULKHEAD)
+                    .put("reserved", reserved)
+                    .put("connectionNumber", capacity);
+        }
+    }
+
+    /**
+     * @return a snapshot of the number of requests in flight by compartment.
+     */
+    Map<Compartment, Integer> getInFlight() {
+        lock.lock();
+        try {
+            return new EnumMap<>(inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends an LDAP request once it is admitted in the compartment of its operation.
+     *
+     * @param operation the name of the operation sending the request.
+     * @param request   the function sending the request.
+     * @param <T>       the type of the response.
+     * @return the response.
+     * @throws LDAPException if the request fails.
+     */
+    <T> T call(String operation, CircuitBreaker.LdapRequest<T> request) throws LDAPException {
+        acquire(operation);
+        try {
+            return request.send();
+        } finally {
+            release(operation);
+        }
+    }
+
+    /**
+     * Sends an asynchronous LDAP request once it is admitted in the compartment of its operation, which is released when the
+     * response is received.
+     *
+     * @param operation the name of the operation sending the request.
+     * @param request   the function sending the request.
+     * @param <T>       the type of the response.
+     * @return the future response, failed if the request was not admitted in time.
+     */
+    <T> CompletableFuture<T> callAsync(final String operation, Supplier<CompletableFuture<T>> request) {
+        // a request admitted on release is sent by the releasing thread, which only has to check out a connection
+        return acquireAsync(operation).thenCompose(admitted -> {
+            CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                release(operation);
+                throw e;
+            }
+            return future.whenComplete((response, throwable) -> release(operation));
+        });
+    }
+
+    /**
+     * Waits until a request of the operation is admitted.
+     *
+     * @param operation the name of the operation.
+     */
+    void acquire(String operation) {
+        if (!enabled) {
+            return;
+        }
+        Compartment compartment = getCompartment(operation);
+        lock.lock();
+        try {
+            if (canAdmit(compartment)) {
+                admit(compartment);
+                return;
+            }
+            Waiter waiter = new Waiter(compartment, limits.get(compartment).priority, arrivals++, lock.newCondition());
+            waiters.add(waiter);
+            long remainingNanos = maxWaitNanos;
+            while (!waiter.admitted && remainingNanos > 0) {
+                try {
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (!waiter.admitted) {
+                waiters.remove(waiter);
+                throw createBulkheadFull(operation, compartment);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admits a request of the operation without waiting.
+     *
+     * @param operation the name of the operation.
+     * @return a future completed once the request is admitted, failed if it was not admitted in time.
+     */
+    private CompletableFuture<Void> acquireAsync(final String operation) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final Compartment compartment = getCompartment(operation);
+        final Waiter waiter;
+        lock.lock();
+        try {
+            if (canAdmit(compartment)) {
+                admit(compartment);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (maxWaitNanos <= 0) {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                future.completeExceptionally(createBulkheadFull(operation, compartment));
+                return future;
+            }
+            waiter = new Waiter(compartment, limits.get(compartment).priority, arrivals++, null);
+            waiters.add(waiter);
+            waiter.timeout = scheduler.schedule(() -> expire(operation, waiter), maxWaitNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+        return waiter.admission;
+    }
+
+    private void expire(String operation, Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.admitted || !waiters.remove(waiter)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        waiter.admission.completeExceptionally(createBulkheadFull(operation, waiter.compartment));
+    }
+
+    /**
+     * Releases an admitted request of the operation and admits waiting requests.
+     *
+     * @param operation the name of the operation.
+     */
+    void release(String operation) {
+        if (!enabled) {
+            return;
+        }
+        Compartment compartment = getCompartment(operation);
+        List<Waiter> admittedAsync = new ArrayList<>();
+        lock.lock();
+        try {
+            inFlight.put(compartment, inFlight.get(compartment) - 1);
+            totalInFlight--;
+            // waiters of a compartment at its maximum concurrency don't block the admission of others
+            PriorityQueue<Waiter> candidates = new PriorityQueue<>(waiters);
+            while (!candidates.isEmpty() && totalInFlight < capacity) {
+                Waiter waiter = candidates.poll();
+                if (canAdmit(waiter.compartment)) {
+                    waiters.remove(waiter);
+                    admit(waiter.compartment);
+                    waiter.admitted = true;
+                    if (waiter.condition != null) {
+                        waiter.condition.signal();
+                    } else {
+                        admittedAsync.add(waiter);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // asynchronous requests are sent outside the lock
+        for (Waiter waiter : admittedAsync) {
+            waiter.timeout.cancel(false);
+            waiter.admission.complete(null);
+        }
+    }
+
+    private boolean canAdmit(Compartment compartment) {
+        Limits compartmentLimits = limits.get(compartment);
+        int compartmentInFlight = inFlight.get(compartment);
+        if (compartmentLimits.maxConcurrency > 0 && compartmentInFlight >= compartmentLimits.maxConcurrency) {
+            return false;
+        }
+        if (compartmentInFlight < compartmentLimits.reserved) {
+            return true;
+        }
+        int reservedByOthers = 0;
+        for (Map.Entry<Compartment, Limits> other : limits.entrySet()) {
+            if (other.getKey() != compartment) {
+                reservedByOthers += Math.max(0, other.getValue().reserved - inFlight.get(other.getKey()));
+            }
+        }
+        return totalInFlight + reservedByOthers < capacity;
+    }
+
+    private void admit(Compartment compartment) {
+        inFlight.put(compartment, inFlight.get(compartment) + 1);
+        totalInFlight++;
+    }
+
+    private SeedException createBulkheadFull(String operation, Compartment compartment) {
+        return SeedException.createNew(LdapErrorCode.BULKHEAD_FULL)
+                .put("operation", operation)
+                .put("compartment", compartment)
+                .put("maxWait", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+    }
+
+    private Compartment getCompartment(String operation) {
+        Compartment compartment = COMPARTMENTS.get(operation);
+        return compartment != null ? compartment : Compartment.BULK;
+    }
+
+    private static class Limits {
+        private final int reserved;
+        private final int maxConcurrency;
+        private final int priority;
+
+        private Limits(LdapConfig.CompartmentConfig compartmentConfig) {
+            this.reserved = compartmentConfig.getReserved();
+            this.maxConcurrency = compartmentConfig.getMaxConcurrency();
+            this.priority = compartmentConfig.getPriority();
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        private final Compartment compartment;
+        private final int priority;
+        private final long arrival;
+        // asynchronous requests have no condition to wait on, they are admitted through their admission future
+        private final Condition condition;
+        private final CompletableFuture<Void> admission = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+        private boolean admitted;
+
+        private Waiter(Compartment compartment, int priority, long arrival, Condition condition) {
+            this.compartment = compartment;
+            this.priority = priority;
+            this.arrival = arrival;
+            this.condition = condition;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            // highest priority first, then first come first served
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(arrival, other.arrival);
+        }
+    }
+}
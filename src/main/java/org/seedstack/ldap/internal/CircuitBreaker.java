@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.seed.SeedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Rejects LDAP requests immediately while the directory is failing, instead of letting every caller wait for its own timeout.
+ * The circuit opens after consecutive requests failed for lack of an available directory or took longer than the latency
+ * threshold. When the open duration has elapsed, a few probe requests are let through: the circuit closes on the first one
+ * succeeding and opens again on the first one failing. Errors returned by a working directory, like an unknown entry or
+ * invalid credentials, don't count as failures.
+ */
+class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long latencyThresholdNanos;
+    private final long openDurationNanos;
+    private final int probeNumber;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile State state = State.CLOSED;
+    private long openingNanos;
+    private int probes;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    CircuitBreaker(LdapConfig.CircuitBreakerConfig circuitBreakerConfig) {
+        this.enabled = circuitBreakerConfig.isEnabled();
+        this.failureThreshold = circuitBreakerConfig.getFailureThreshold();
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(circuitBreakerConfig.getLatencyThreshold());
+        this.openDurationNanos = TimeUnit.SECONDS.toNanos(circuitBreakerConfig.getOpenDuration());
+        this.probeNumber = circuitBreakerConfig.getProbeNumber();
+    }
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * Sends an LDAP request unless the circuit is open.
+     *
+     * @param operation the name of the operation sending the request.
+     * @param request   the function sending the request.
+     * @param <T>       the type of the response.
+     * @return the response.
+     * @throws LDAPException if the request fails.
+     */
+    <T> T call(String operation, LdapRequest<T> request) throws LDAPException {
+        acquire(operation);
+        long startNanos = System.nanoTime();
+        T response;
+        try {
+            response = request.send();
+        } catch (LDAPException | RuntimeException e) {
+            record(System.nanoTime() - startNanos, e);
+            throw e;
+        }
+        record(System.nanoTime() - startNanos, null);
+        return response;
+    }
+
+    /**
+     * Sends an asynchronous LDAP request unless the circuit is open.
+     *
+     * @param operation the name of the operation sending the request.
+     * @param request   the function sending the request.
+     * @param <T>       the type of the response.
+     * @return the future response, failed immediately if the circuit is open.
+     */
+    <T> CompletableFuture<T> callAsync(String operation, Supplier<CompletableFuture<T>> request) {
+        try {
+            acquire(operation);
+        } catch (SeedException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        final long startNanos = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            // the outcome must be recorded in any case, to conclude the probe that may have been let through
+            record(System.nanoTime() - startNanos, e);
+            throw e;
+        }
+        return future.whenComplete((response, throwable) -> record(System.nanoTime() - startNanos, throwable));
+    }
+
+    private void acquire(String operation) {
+        if (!enabled || state == State.CLOSED) {
+            return;
+        }
+        long remainingNanos;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openingNanos >= openDurationNanos) {
+                LOGGER.info("Probing LDAP directory after {} second(s) of suspended calls", TimeUnit.NANOSECONDS.toSeconds(openDurationNanos));
+                state = State.HALF_OPEN;
+                probes = 0;
+            }
+            if (state == State.CLOSED || state == State.HALF_OPEN && probes++ < probeNumber) {
+                return;
+            }
+            remainingNanos = Math.max(0, openDurationNanos - (System.nanoTime() - openingNanos));
+        }
+        throw SeedException.createNew(LdapErrorCode.CIRCUIT_OPEN)
+                .put("operation", operation)
+                .put("remainingTime", TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+    }
+
+    private void record(long elapsedNanos, Throwable throwable) {
+        if (!enabled) {
+            return;
+        }
+        if (LdapUtils.isDirectoryFailure(throwable) || latencyThresholdNanos > 0 && elapsedNanos > latencyThresholdNanos) {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold || state == State.HALF_OPEN) {
+                open();
+            }
+        } else {
+            consecutiveFailures.set(0);
+            if (state == State.HALF_OPEN) {
+                close();
+            }
+        }
+    }
+
+    private synchronized void open() {
+        if (state != State.OPEN) {
+            LOGGER.warn("Suspending LDAP calls for {} second(s) after {} consecutive failed or slow request(s)", TimeUnit.NANOSECONDS.toSeconds(openDurationNanos), consecutiveFailures.get());
+            state = State.OPEN;
+            openingNanos = System.nanoTime();
+        }
+    }
+
+    private synchronized void close() {
+        if (state == State.HALF_OPEN) {
+            LOGGER.info("Resuming LDAP calls after successful probe");
+            state = State.CLOSED;
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * A request to the LDAP directory.
+     *
+     * @param <T> the type of the response.
+     */
+    interface LdapRequest<T> {
+        T send() throws LDAPException;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.seed.SeedException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Remembers the credentials of recently authenticated users, so repeated logins with the same credentials are verified
+ * without calling the directory. Passwords are never kept: only a salted PBKDF2 hash is stored along with the found user.
+ */
+class CredentialCache {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int ITERATIONS = 10000;
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 256;
+    private final LocalLdapCache<VerifiedCredential> credentialsCache;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    CredentialCache(LocalLdapCache<VerifiedCredential> credentialsCache) {
+        this.credentialsCache = credentialsCache;
+    }
+
+    boolean isEnabled() {
+        return credentialsCache.isEnabled();
+    }
+
+    /**
+     * Verifies credentials against the cached ones. Cached credentials that don't match are invalidated, as the password of
+     * the user may have changed.
+     *
+     * @param identityAttributeValue the value of the identifying attribute of the user.
+     * @param password               the password to verify.
+     * @return the context of the user if the credentials match, null otherwise.
+     */
+    DefaultLdapUserContext verify(String identityAttributeValue, char[] password) {
+        VerifiedCredential verifiedCredential = credentialsCache.get(identityAttributeValue);
+        if (verifiedCredential == null) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(verifiedCredential.hash, hash(password, verifiedCredential.salt))) {
+            credentialsCache.invalidate(identityAttributeValue);
+            return null;
+        }
+        DefaultLdapUserContext userContext = new DefaultLdapUserContext(verifiedCredential.user.getDn());
+        userContext.setKnownAttributes(verifiedCredential.user.getAttributes());
+        return userContext;
+    }
+
+    /**
+     * Remembers credentials that were successfully verified by the directory.
+     *
+     * @param identityAttributeValue the value of the identifying attribute of the user.
+     * @param userContext            the context of the authenticated user.
+     * @param password               the verified password.
+     */
+    void put(String identityAttributeValue, DefaultLdapUserContext userContext, char[] password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        credentialsCache.put(identityAttributeValue, new VerifiedCredential(
+                new UserEntry(userContext.getDn(), userContext.getKnownAttributes()),
+                salt,
+                hash(password, salt)
+        ));
+    }
+
+    void invalidate(String identityAttributeValue) {
+        credentialsCache.invalidate(identityAttributeValue);
+    }
+
+    private byte[] hash(char[] password, byte[] salt) {
+        PBEKeySpec keySpec = new PBEKeySpec(password, salt, ITERATIONS, HASH_LENGTH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(keySpec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw SeedException.wrap(e, LdapErrorCode.CREDENTIAL_HASH_ERROR).put("algorithm", ALGORITHM);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    static class VerifiedCredential {
+        private final UserEntry user;
+        private final byte[] salt;
+        private final byte[] hash;
+
+        private VerifiedCredential(UserEntry user, byte[] salt, byte[] hash) {
+            this.user = user;
+            this.salt = salt;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.ldap.LdapCache;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapCacheProvider;
+import org.seedstack.ldap.LdapCacheStatistics;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.seed.SeedException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+class DefaultLdapCacheManager implements LdapCacheManager {
+    private final LdapCacheProvider ldapCacheProvider;
+    private final Map<String, LdapCache<?>> caches = new LinkedHashMap<>();
+    private final LdapCache<Set<String>> userGroupsCache;
+    private final LdapCache<UserEntry> usersCache;
+    private final LdapCache<Map<String, String>> userAttributesCache;
+    private final LdapCache<Boolean> unknownUsersCache;
+    private final LocalLdapCache<CredentialCache.VerifiedCredential> credentialsCache;
+    private final LocalLdapCache<RoleResolutionCache.Resolution> rolesCache;
+
+    DefaultLdapCacheManager(LdapConfig ldapConfig) {
+        this(ldapConfig, new LocalLdapCacheProvider());
+    }
+
+    DefaultLdapCacheManager(LdapConfig ldapConfig, LdapCacheProvider ldapCacheProvider) {
+        this.ldapCacheProvider = ldapCacheProvider;
+        userGroupsCache = register(this.<Set<String>>createCache(USER_GROUPS, ldapConfig.group().cache()));
+        usersCache = register(this.<UserEntry>createCache(USERS, ldapConfig.user().cache()));
+        userAttributesCache = register(this.<Map<String, String>>createCache(USER_ATTRIBUTES, ldapConfig.user().attributeCache()));
+        unknownUsersCache = register(this.<Boolean>createCache(UNKNOWN_USERS, ldapConfig.user().negativeCache()));
+        // verified credentials never leave the application instance, whatever the provider
+        credentialsCache = register(new LocalLdapCache<CredentialCache.VerifiedCredential>(CREDENTIALS, ldapConfig.user().credentialCache()));
+        // resolved roles hold live permission objects which are not meant to be shared between instances
+        rolesCache = register(new LocalLdapCache<RoleResolutionCache.Resolution>(ROLES, ldapConfig.group().roleCache()));
+    }
+
+    LdapCache<Set<String>> getUserGroupsCache() {
+        return userGroupsCache;
+    }
+
+    LdapCache<UserEntry> getUsersCache() {
+        return usersCache;
+    }
+
+    LdapCache<Map<String, String>> getUserAttributesCache() {
+        return userAttributesCache;
+    }
+
+    LdapCache<Boolean> getUnknownUsersCache() {
+        return unknownUsersCache;
+    }
+
+    LocalLdapCache<CredentialCache.VerifiedCredential> getCredentialsCache() {
+        return credentialsCache;
+    }
+
+    LocalLdapCache<RoleResolutionCache.Resolution> getRolesCache() {
+        return rolesCache;
+    }
+
+    @Override
+    public Set<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public LdapCacheStatistics getStatistics(String cacheName) {
+        return getCache(cacheName);
+    }
+
+    @Override
+    public void invalidate(String cacheName, String key) {
+        getCache(cacheName).invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll(String cacheName) {
+        getCache(cacheName).invalidateAll();
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (LdapCache<?> cache : caches.values()) {
+            cache.invalidateAll();
+        }
+    }
+
+    private <V> LdapCache<V> createCache(String name, LdapConfig.CacheConfig cacheConfig) {
+        // a disabled cache is an always empty local one, sparing the provider from handling it
+        return cacheConfig.isEnabled() ? ldapCacheProvider.<V>createCache(name, cacheConfig) : new LocalLdapCache<V>(name, cacheConfig);
+    }
+
+    private <C extends LdapCache<?>> C register(C cache) {
+        caches.put(cache.getName(), cache);
+        return cache;
+    }
+
+    private LdapCache<?> getCache(String cacheName) {
+        LdapCache<?> cache = caches.get(cacheName);
+        if (cache == null) {
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_CACHE)
+                    .put("cache", cacheName)
+                    .put("availableCaches", caches.keySet());
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.ldap.LdapOperationStatistics;
+import org.seedstack.ldap.LdapPoolStatistics;
+import org.seedstack.seed.SeedException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+class DefaultLdapMetrics implements LdapMetrics {
+    private final Map<String, OperationMetrics> operations = new LinkedHashMap<>();
+    private final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+
+    DefaultLdapMetrics() {
+        for (String operationName : new String[]{FIND_USER, FIND_USERS, AUTHENTICATE, GET_ATTRIBUTE_VALUES, RETRIEVE_USER_GROUPS, SEARCH_PAGE}) {
+            operations.put(operationName, new OperationMetrics(operationName));
+        }
+    }
+
+    void registerPool(String poolName, LDAPConnectionPool pool) {
+        pools.put(poolName, new PoolMetrics(poolName, pool));
+    }
+
+    OperationMetrics getOperationMetrics(String operationName) {
+        OperationMetrics operationMetrics = operations.get(operationName);
+        if (operationMetrics == null) {
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_OPERATION)
+                    .put("operation", operationName)
+                    .put("availableOperations", operations.keySet());
+        }
+        return operationMetrics;
+    }
+
+    @Override
+    public Set<String> getOperationNames() {
+        return Collections.unmodifiableSet(operations.keySet());
+    }
+
+    @Override
+    public LdapOperationStatistics getOperationStatistics(String operationName) {
+        return getOperationMetrics(operationName);
+    }
+
+    @Override
+    public Set<String> getPoolNames() {
+        return Collections.unmodifiableSet(pools.keySet());
+    }
+
+    @Override
+    public LdapPoolStatistics getPoolStatistics(String poolName) {
+        PoolMetrics poolMetrics = pools.get(poolName);
+        if (poolMetrics == null) {
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_POOL)
+                    .put("pool", poolName)
+                    .put("availablePools", pools.keySet());
+        }
+        return poolMetrics;
+    }
+
+    @Override
+    public void reset() {
+        for (OperationMetrics operationMetrics : operations.values()) {
+            operationMetrics.reset();
+        }
+        for (PoolMetrics poolMetrics : pools.values()) {
+            poolMetrics.reset();
+        }
+    }
+}
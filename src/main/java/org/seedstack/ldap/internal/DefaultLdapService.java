@@ -7,13 +7,25 @@
  */
 package org.seedstack.ldap.internal;
 
-import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPRequest;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.RDN;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
 import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+import org.seedstack.ldap.AsyncLdapService;
 import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
 import org.seedstack.ldap.LdapService;
 import org.seedstack.ldap.LdapUserContext;
 import org.seedstack.seed.Configuration;
@@ -22,21 +34,65 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-class DefaultLdapService implements LdapService {
+class DefaultLdapService implements LdapService, AsyncLdapService {
     private final static Logger LOGGER = LoggerFactory.getLogger(DefaultLdapService.class);
     @Configuration
+    private LdapConfig ldapConfig;
+    @Configuration
     private LdapConfig.UserConfig userConfig;
     @Configuration
     private LdapConfig.GroupConfig groupConfig;
     @Inject
-    private LDAPConnectionPool ldapConnectionPool;
+    private Provider<LDAPConnectionPool> ldapConnectionPool;
+    @Inject
+    @Named(LdapModule.AUTHENTICATION_POOL)
+    private Provider<LDAPConnectionPool> authenticationConnectionPool;
+    @Inject
+    @Named(LdapModule.AUTHENTICATION_EXECUTOR)
+    private ExecutorService authenticationExecutor;
+    @Inject
+    @Named(LdapModule.ASYNC_EXECUTOR)
+    private ExecutorService asyncExecutor;
+    @Inject
+    private DefaultLdapCacheManager ldapCacheManager;
+    @Inject
+    private GroupGraph groupGraph;
+    @Inject
+    private MemberOfResolver memberOfResolver;
+    @Inject
+    private SearchCoalescer searchCoalescer;
+    @Inject
+    private CircuitBreaker circuitBreaker;
+    @Inject
+    private Bulkhead bulkhead;
+    @Inject
+    private DirectoryReplica directoryReplica;
+    @Inject
+    private DirectorySnapshot directorySnapshot;
+    @Inject
+    private DefaultLdapMetrics ldapMetrics;
 
     @Override
     public LdapUserContext createUserContext(String dn) {
@@ -49,103 +105,773 @@ class DefaultLdapService implements LdapService {
 
     @Override
     public LdapUserContext findUser(String identityAttributeValue) {
+        return findUser(identityAttributeValue, null);
+    }
+
+    @Override
+    public LdapUserContext findUser(String identityAttributeValue, String prefetchProfile) {
+        OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.FIND_USER).start();
         try {
-            Filter userClassFilter;
-            if (Strings.isNullOrEmpty(userConfig.getObjectClass())) {
-                userClassFilter = Filter.createPresenceFilter("objectclass");
+            String[] userAttributes = getUserAttributes(prefetchProfile);
+            LdapUserContext userContext = findLocalUser(identityAttributeValue, userAttributes);
+            if (userContext == null) {
+                boolean memberOf = memberOfResolver.isEnabled();
+                SearchResult searchResult = search(LdapMetrics.FIND_USER, userConfig.getBaseDN(), SearchScope.SUB, createUserFilter(identityAttributeValue), withMemberOf(memberOf, userAttributes));
+                sample.addEntries(searchResult.getEntryCount());
+                userContext = toUserContext(identityAttributeValue, searchResult, memberOf, userAttributes);
+            }
+            sample.success();
+            return userContext;
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            LdapUserContext snapshotUser = getSnapshotUser(identityAttributeValue, e);
+            if (snapshotUser != null) {
+                return snapshotUser;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<LdapUserContext> findUserAsync(final String identityAttributeValue) {
+        return findUserAsync(identityAttributeValue, null);
+    }
+
+    @Override
+    public CompletableFuture<LdapUserContext> findUserAsync(final String identityAttributeValue, String prefetchProfile) {
+        final OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.FIND_USER).start();
+        final String[] userAttributes = getUserAttributes(prefetchProfile);
+        final boolean memberOf = memberOfResolver.isEnabled();
+        CompletableFuture<LdapUserContext> future;
+        try {
+            LdapUserContext localUser = findLocalUser(identityAttributeValue, userAttributes);
+            if (localUser != null) {
+                future = CompletableFuture.completedFuture(localUser);
             } else {
-                userClassFilter = Filter.createEqualityFilter("objectclass", userConfig.getObjectClass());
+                future = asyncSearch(LdapMetrics.FIND_USER, userConfig.getBaseDN(), SearchScope.SUB, createUserFilter(identityAttributeValue), withMemberOf(memberOf, userAttributes))
+                        .thenApplyAsync(searchResult -> {
+                            sample.addEntries(searchResult.getEntryCount());
+                            return toUserContext(identityAttributeValue, searchResult, memberOf, userAttributes);
+                        }, asyncExecutor);
             }
+        } catch (SeedException e) {
+            future = failedFuture(e);
+        }
+        return withFallback(measure(sample, future), throwable -> getSnapshotUser(identityAttributeValue, throwable));
+    }
 
-            Filter filter = Filter.createANDFilter(userClassFilter, Filter.createEqualityFilter(userConfig.getIdAttribute(), identityAttributeValue));
-            LOGGER.debug(filter.toString());
+    @Override
+    public Map<String, LdapUserContext> findUsers(Collection<String> identityAttributeValues, String... attributes) {
+        OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.FIND_USERS).start();
+        try {
+            Map<String, LdapUserContext> result = searchUsers(identityAttributeValues, sample, attributes);
+            sample.success();
+            return result;
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            throw e;
+        }
+    }
 
-            List<String> attributesToRetrieve = new ArrayList<>(userConfig.getAdditionalAttributes());
-            if (!attributesToRetrieve.contains("cn") || !attributesToRetrieve.contains("CN")) {
-                attributesToRetrieve.add("cn");
+    private Map<String, LdapUserContext> searchUsers(Collection<String> identityAttributeValues, OperationMetrics.Sample sample, String... attributes) {
+        Map<String, LdapUserContext> result = new HashMap<>();
+        Set<String> pendingIdentities = new LinkedHashSet<>();
+        boolean replicaFresh = directoryReplica.isFresh() && directoryReplica.hasAttributes(toLowerCase(attributes));
+        for (String identityAttributeValue : identityAttributeValues) {
+            if (replicaFresh) {
+                UserEntry replicatedUser = directoryReplica.findUser(identityAttributeValue);
+                if (replicatedUser != null) {
+                    result.put(identityAttributeValue, toUserContext(replicatedUser));
+                }
+                continue;
+            }
+            DefaultLdapUserContext cachedUser = getCachedUser(identityAttributeValue);
+            if (cachedUser != null && getMissingAttributes(cachedUser, attributes).isEmpty()) {
+                result.put(identityAttributeValue, cachedUser);
+            } else if (cachedUser != null || ldapCacheManager.getUnknownUsersCache().get(identityAttributeValue) == null) {
+                pendingIdentities.add(identityAttributeValue);
             }
+        }
+
+        String idAttribute = userConfig.getIdAttribute();
+        Set<String> attributesToRetrieve = new LinkedHashSet<>(Arrays.asList(getUserAttributes(null)));
+        for (String attribute : attributes) {
+            attributesToRetrieve.add(attribute.toLowerCase());
+        }
+        List<String> requestedAttributes = new ArrayList<>(attributesToRetrieve);
+        attributesToRetrieve.add(idAttribute);
+        boolean memberOf = memberOfResolver.isEnabled();
+        if (memberOf) {
+            attributesToRetrieve.add(memberOfResolver.getAttribute());
+        }
 
-            SearchResult searchResult = ldapConnectionPool.search(userConfig.getBaseDN(), SearchScope.SUB, filter, attributesToRetrieve.toArray(new String[attributesToRetrieve.size()]));
-            if (searchResult.getEntryCount() != 1) {
-                throw SeedException.createNew(LdapErrorCode.UNKNOWN_USER)
-                        .put("user", identityAttributeValue);
+        for (List<String> chunk : Lists.partition(new ArrayList<>(pendingIdentities), userConfig.getBatchSize())) {
+            List<Filter> identityFilters = new ArrayList<>();
+            for (String identityAttributeValue : chunk) {
+                identityFilters.add(Filter.createEqualityFilter(idAttribute, identityAttributeValue));
             }
-            SearchResultEntry searchResultEntry = searchResult.getSearchEntries().get(0);
-            String dn = searchResultEntry.getDN();
+            Filter filter = Filter.createANDFilter(LdapUtils.objectClassFilter(userConfig.getObjectClass()), Filter.createORFilter(identityFilters));
+            LOGGER.debug("Searching {} users in one LDAP call", chunk.size());
 
-            DefaultLdapUserContext ldapUserContext = internalCreateUser(dn);
-            ldapUserContext.getKnownAttributes().put("cn", searchResultEntry.getAttributeValue("cn"));
-            return ldapUserContext;
-        } catch (com.unboundid.ldap.sdk.LDAPException e) {
-            throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+            SearchResult searchResult = search(LdapMetrics.FIND_USERS, userConfig.getBaseDN(), SearchScope.SUB, filter, attributesToRetrieve.toArray(new String[attributesToRetrieve.size()]));
+            sample.addEntries(searchResult.getEntryCount());
+
+            // identifying attributes are matched case-insensitively like most LDAP directories do
+            Map<String, List<SearchResultEntry>> entriesByIdentity = new HashMap<>();
+            for (SearchResultEntry entry : searchResult.getSearchEntries()) {
+                String[] identityValues = entry.getAttributeValues(idAttribute);
+                if (identityValues != null) {
+                    for (String identityValue : identityValues) {
+                        String key = identityValue.toLowerCase();
+                        if (!entriesByIdentity.containsKey(key)) {
+                            entriesByIdentity.put(key, new ArrayList<SearchResultEntry>());
+                        }
+                        entriesByIdentity.get(key).add(entry);
+                    }
+                }
+            }
+
+            for (String identityAttributeValue : chunk) {
+                List<SearchResultEntry> entries = entriesByIdentity.get(identityAttributeValue.toLowerCase());
+                if (entries == null) {
+                    ldapCacheManager.getUnknownUsersCache().put(identityAttributeValue, Boolean.TRUE);
+                } else if (entries.size() > 1) {
+                    // ambiguous users exist, so they are left absent from the result without being cached as unknown
+                    LOGGER.warn("Found {} entries for user {} in the LDAP directory, ignoring it", entries.size(), identityAttributeValue);
+                } else {
+                    result.put(identityAttributeValue, toUserContext(identityAttributeValue, entries.get(0), memberOf, requestedAttributes));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<LdapUserContext> streamUsers(String filter, String... attributes) {
+        final List<String> userAttributes = toLowerCase(attributes);
+        for (String attribute : getUserAttributes(null)) {
+            if (!userAttributes.contains(attribute)) {
+                userAttributes.add(attribute);
+            }
+        }
+        // streamed users are not cached, as enumerating the directory would evict the users actually logging in
+        return new PagedSearchIterator<LdapUserContext>(
+                ldapConnectionPool.get(),
+                ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE),
+                circuitBreaker,
+                bulkhead,
+                withResponseTimeout(LdapMetrics.SEARCH_PAGE, new SearchRequest(
+                        userConfig.getBaseDN(),
+                        SearchScope.SUB,
+                        Filter.createANDFilter(LdapUtils.objectClassFilter(userConfig.getObjectClass()), parseFilter(filter)),
+                        userAttributes.toArray(new String[userAttributes.size()])
+                )),
+                ldapConfig.getPageSize(),
+                entry -> {
+                    DefaultLdapUserContext ldapUserContext = internalCreateUser(entry.getDN());
+                    ldapUserContext.setKnownAttributes(toAttributes(entry, userAttributes));
+                    return ldapUserContext;
+                }
+        ).stream();
+    }
+
+    private LdapUserContext findLocalUser(String identityAttributeValue, String... attributes) {
+        DefaultLdapUserContext localUser;
+        boolean unknownUser;
+        boolean complete;
+        if (directoryReplica.isFresh()) {
+            // the replica is authoritative for user existence
+            UserEntry replicatedUser = directoryReplica.findUser(identityAttributeValue);
+            localUser = replicatedUser == null ? null : toUserContext(replicatedUser);
+            unknownUser = replicatedUser == null;
+            complete = directoryReplica.hasAttributes(Arrays.asList(attributes));
+        } else {
+            localUser = getCachedUser(identityAttributeValue);
+            unknownUser = localUser == null && ldapCacheManager.getUnknownUsersCache().get(identityAttributeValue) != null;
+            complete = localUser != null && getMissingAttributes(localUser, attributes).isEmpty();
+        }
+        if (unknownUser) {
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_USER)
+                    .put("user", identityAttributeValue);
         }
+        // a user lacking prefetched attributes is searched again, which costs the same LDAP call than retrieving them
+        return complete ? localUser : null;
+    }
+
+    private DefaultLdapUserContext getCachedUser(String identityAttributeValue) {
+        UserEntry cachedUser = ldapCacheManager.getUsersCache().get(identityAttributeValue);
+        return cachedUser == null ? null : toUserContext(cachedUser);
+    }
+
+    private DefaultLdapUserContext toUserContext(UserEntry userEntry) {
+        DefaultLdapUserContext ldapUserContext = internalCreateUser(userEntry.getDn());
+        ldapUserContext.setKnownAttributes(userEntry.getAttributes());
+        return ldapUserContext;
+    }
+
+    private Filter createUserFilter(String identityAttributeValue) {
+        Filter filter = Filter.createANDFilter(LdapUtils.objectClassFilter(userConfig.getObjectClass()), Filter.createEqualityFilter(userConfig.getIdAttribute(), identityAttributeValue));
+        LOGGER.debug(filter.toString());
+        return filter;
+    }
+
+    private String[] getUserAttributes(String prefetchProfile) {
+        Set<String> attributesToRetrieve = new LinkedHashSet<>();
+        attributesToRetrieve.add("cn");
+        for (String attribute : userConfig.getAdditionalAttributes()) {
+            attributesToRetrieve.add(attribute.toLowerCase());
+        }
+        if (prefetchProfile != null) {
+            for (String attribute : userConfig.getPrefetchProfile(prefetchProfile)) {
+                attributesToRetrieve.add(attribute.toLowerCase());
+            }
+        }
+        return attributesToRetrieve.toArray(new String[attributesToRetrieve.size()]);
+    }
+
+    private String[] withMemberOf(boolean memberOf, String... attributes) {
+        if (!memberOf) {
+            return attributes;
+        }
+        String[] attributesToRetrieve = Arrays.copyOf(attributes, attributes.length + 1);
+        attributesToRetrieve[attributes.length] = memberOfResolver.getAttribute();
+        return attributesToRetrieve;
+    }
+
+    private LdapUserContext toUserContext(String identityAttributeValue, SearchResult searchResult, boolean memberOf, String... attributes) {
+        if (searchResult.getEntryCount() == 0) {
+            ldapCacheManager.getUnknownUsersCache().put(identityAttributeValue, Boolean.TRUE);
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_USER)
+                    .put("user", identityAttributeValue);
+        } else if (searchResult.getEntryCount() > 1) {
+            // ambiguous identities are not remembered as unknown, as they may become unique once the directory is fixed
+            throw SeedException.createNew(LdapErrorCode.AMBIGUOUS_USER)
+                    .put("user", identityAttributeValue)
+                    .put("count", searchResult.getEntryCount());
+        }
+        return toUserContext(identityAttributeValue, searchResult.getSearchEntries().get(0), memberOf, Arrays.asList(attributes));
+    }
+
+    private LdapUserContext toUserContext(String identityAttributeValue, SearchResultEntry searchResultEntry, boolean memberOf, List<String> attributes) {
+        DefaultLdapUserContext ldapUserContext = internalCreateUser(searchResultEntry.getDN());
+        ldapUserContext.setKnownAttributes(toAttributes(searchResultEntry, attributes));
+        if (memberOf) {
+            // the groups came with the user search and are only cached, so that the cache TTL and invalidations apply to them
+            cacheGroups(ldapUserContext.getDn(), memberOfResolver.getGroups(searchResultEntry));
+        }
+        ldapCacheManager.getUsersCache().put(identityAttributeValue, new UserEntry(ldapUserContext.getDn(), ldapUserContext.getKnownAttributes()));
+        directorySnapshot.recordUser(identityAttributeValue, ldapUserContext.getDn());
+        return ldapUserContext;
     }
 
     @Override
     public void authenticate(LdapUserContext userContext, String password) {
+        OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.AUTHENTICATE).start();
         try {
-            ldapConnectionPool.bindAndRevertAuthentication(userContext.getDn(), password);
-        } catch (com.unboundid.ldap.sdk.LDAPException e) {
+            final LDAPConnectionPool pool = authenticationConnectionPool.get();
+            final SimpleBindRequest bindRequest = withResponseTimeout(LdapMetrics.AUTHENTICATE, new SimpleBindRequest(userContext.getDn(), password));
+            if (pool == ldapConnectionPool.get()) {
+                send(LdapMetrics.AUTHENTICATE, pool, true, connection -> connection.bind(bindRequest));
+            } else {
+                // the connection stays bound as the user until its next use by another authentication
+                // and the dedicated pool is not shared with other operations, so binds don't go through the bulkhead
+                sendOnConnection(LdapMetrics.AUTHENTICATE, pool, false, connection -> connection.bind(bindRequest));
+            }
+        } catch (LDAPException e) {
+            sample.failure(e);
             throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            throw e;
         }
+        sample.success();
+    }
+
+    @Override
+    public CompletableFuture<Void> authenticateAsync(final LdapUserContext userContext, final String password) {
+        return CompletableFuture.runAsync(() -> authenticate(userContext, password), authenticationExecutor);
     }
 
     @Override
     public String getAttributeValue(LdapUserContext userContext, String attribute) {
-        if (((DefaultLdapUserContext) userContext).getKnownAttributes().get(attribute.toLowerCase()) != null) {
-            return ((DefaultLdapUserContext) userContext).getKnownAttributes().get(attribute.toLowerCase());
+        String lowerCaseAttribute = attribute.toLowerCase();
+        if (((DefaultLdapUserContext) userContext).isKnown(lowerCaseAttribute)) {
+            return ((DefaultLdapUserContext) userContext).getAttribute(lowerCaseAttribute);
         }
-        return getAttributeValues(userContext, attribute).get(attribute);
+        return getAttributeValues(userContext, attribute).get(lowerCaseAttribute);
     }
 
     @Override
     public Map<String, String> getAttributeValues(LdapUserContext userContext, String... attributes) {
-        Map<String, String> result = new HashMap<>();
+        final OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.GET_ATTRIBUTE_VALUES).start();
+        final DefaultLdapUserContext ldapUserContext = (DefaultLdapUserContext) userContext;
+        try {
+            // attributes already being retrieved by a concurrent call are waited for instead of being retrieved again
+            ldapUserContext.load(getMissingAttributes(ldapUserContext, attributes), missingAttributes -> {
+                Map<String, String> replicatedAttributes = getReplicatedAttributes(ldapUserContext.getDn(), missingAttributes);
+                if (replicatedAttributes != null) {
+                    return CompletableFuture.completedFuture(replicatedAttributes);
+                }
+                Map<String, String> cachedAttributes = ldapCacheManager.getUserAttributesCache().get(ldapUserContext.getDn());
+                if (cachedAttributes != null && cachedAttributes.keySet().containsAll(missingAttributes)) {
+                    return CompletableFuture.completedFuture(cachedAttributes);
+                }
+                LOGGER.debug("Connecting to LDAP directory to retrieve attributes {}", missingAttributes);
+                SearchResultEntry entry = getEntry(LdapMetrics.GET_ATTRIBUTE_VALUES, ldapUserContext.getDn(), missingAttributes.toArray(new String[missingAttributes.size()]));
+                sample.addEntries(entry == null ? 0 : 1);
+                return CompletableFuture.completedFuture(cacheAttributes(ldapUserContext.getDn(), cachedAttributes, toAttributes(entry, missingAttributes)));
+            }).join();
+        } catch (CompletionException e) {
+            sample.failure(e.getCause());
+            throw unwrap(e);
+        }
+        sample.success();
+        return collectAttributes(ldapUserContext, attributes);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getAttributeValuesAsync(LdapUserContext userContext, final String... attributes) {
+        final OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.GET_ATTRIBUTE_VALUES).start();
+        final DefaultLdapUserContext ldapUserContext = (DefaultLdapUserContext) userContext;
+        return measure(sample, ldapUserContext.load(getMissingAttributes(ldapUserContext, attributes), missingAttributes -> {
+            Map<String, String> replicatedAttributes = getReplicatedAttributes(ldapUserContext.getDn(), missingAttributes);
+            if (replicatedAttributes != null) {
+                return CompletableFuture.completedFuture(replicatedAttributes);
+            }
+            Map<String, String> cachedAttributes = ldapCacheManager.getUserAttributesCache().get(ldapUserContext.getDn());
+            if (cachedAttributes != null && cachedAttributes.keySet().containsAll(missingAttributes)) {
+                return CompletableFuture.completedFuture(cachedAttributes);
+            }
+            LOGGER.debug("Connecting to LDAP directory to retrieve attributes {}", missingAttributes);
+            return asyncSearch(LdapMetrics.GET_ATTRIBUTE_VALUES, ldapUserContext.getDn(), SearchScope.BASE, Filter.createPresenceFilter("objectclass"), missingAttributes.toArray(new String[missingAttributes.size()]))
+                    .thenApplyAsync(searchResult -> {
+                        sample.addEntries(searchResult.getEntryCount());
+                        return cacheAttributes(ldapUserContext.getDn(), cachedAttributes, toAttributes(searchResult.getEntryCount() == 1 ? searchResult.getSearchEntries().get(0) : null, missingAttributes));
+                    }, asyncExecutor);
+        }).thenApply(loaded -> collectAttributes(ldapUserContext, attributes)));
+    }
+
+    private List<String> getMissingAttributes(DefaultLdapUserContext userContext, String... attributes) {
         List<String> retainedAttr = new ArrayList<>();
-        Map<String, String> knownAttributes = ((DefaultLdapUserContext) userContext).getKnownAttributes();
-        for (String attr : attributes) {
-            if (knownAttributes.get(attr.toLowerCase()) == null) {
-                retainedAttr.add(attr.toLowerCase());
+        for (String attr : toLowerCase(attributes)) {
+            if (!userContext.isKnown(attr)) {
+                retainedAttr.add(attr);
             }
         }
-        if (!retainedAttr.isEmpty()) {
-            LOGGER.debug("Connecting to LDAP directory to retrieve attributes {}", retainedAttr);
-            try {
-                SearchResultEntry entry = ldapConnectionPool.getEntry(userContext.getDn(), retainedAttr.toArray(new String[retainedAttr.size()]));
+        return retainedAttr;
+    }
+
+    private List<String> toLowerCase(String... attributes) {
+        Set<String> lowerCaseAttributes = new LinkedHashSet<>();
+        for (String attr : attributes) {
+            lowerCaseAttributes.add(attr.toLowerCase());
+        }
+        return new ArrayList<>(lowerCaseAttributes);
+    }
+
+    private Map<String, String> getReplicatedAttributes(String dn, List<String> retainedAttr) {
+        if (directoryReplica.isFresh() && directoryReplica.hasAttributes(retainedAttr)) {
+            UserEntry replicatedUser = directoryReplica.findUserByDn(dn);
+            if (replicatedUser != null) {
+                Map<String, String> attributes = new HashMap<>();
                 for (String attr : retainedAttr) {
-                    knownAttributes.put(attr, entry.getAttributeValue(attr));
+                    attributes.put(attr, replicatedUser.getAttributes().get(attr));
                 }
-            } catch (com.unboundid.ldap.sdk.LDAPException e) {
-                throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+                return attributes;
             }
         }
+        return null;
+    }
+
+    private Map<String, String> toAttributes(SearchResultEntry entry, List<String> retainedAttr) {
+        // attributes of a missing entry are considered absent
+        Map<String, String> attributes = new HashMap<>();
+        for (String attr : retainedAttr) {
+            attributes.put(attr, entry == null ? null : entry.getAttributeValue(attr));
+        }
+        return attributes;
+    }
+
+    private Map<String, String> cacheAttributes(String dn, Map<String, String> cachedAttributes, Map<String, String> retrievedAttributes) {
+        // absent attributes are cached too, as null values
+        Map<String, String> attributes = cachedAttributes == null ? new HashMap<String, String>() : new HashMap<>(cachedAttributes);
+        attributes.putAll(retrievedAttributes);
+        ldapCacheManager.getUserAttributesCache().put(dn, Collections.unmodifiableMap(attributes));
+        return retrievedAttributes;
+    }
+
+    private Map<String, String> collectAttributes(DefaultLdapUserContext userContext, String... attributes) {
+        Map<String, String> result = new HashMap<>();
         for (String attr : attributes) {
-            result.put(attr.toLowerCase(), knownAttributes.get(attr.toLowerCase()));
+            result.put(attr.toLowerCase(), userContext.getAttribute(attr.toLowerCase()));
         }
         return result;
     }
 
     @Override
     public Set<String> retrieveUserGroups(LdapUserContext userContext) {
-        Set<String> groups = new HashSet<>();
+        OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.RETRIEVE_USER_GROUPS).start();
         try {
-            Filter groupClassFilter;
-            if (Strings.isNullOrEmpty(groupConfig.getObjectClass())) {
-                groupClassFilter = Filter.createPresenceFilter("objectclass");
+            Set<String> groups;
+            Set<String> cachedGroups;
+            // until the groups are loaded, only the direct groups are resolved
+            if (groupConfig.nested().isEnabled() && groupGraph.isLoaded()) {
+                groups = groupGraph.getGroups(userContext.getDn());
+            } else if (directoryReplica.isFresh()) {
+                groups = directoryReplica.getGroups(userContext.getDn());
+            } else if ((cachedGroups = ldapCacheManager.getUserGroupsCache().get(userContext.getDn())) != null) {
+                groups = new HashSet<>(cachedGroups);
+            } else if (memberOfResolver.isEnabled()) {
+                SearchResultEntry entry = getEntry(LdapMetrics.RETRIEVE_USER_GROUPS, userContext.getDn(), memberOfResolver.getAttribute());
+                sample.addEntries(entry == null ? 0 : 1);
+                groups = cacheGroups(userContext.getDn(), memberOfResolver.getGroups(entry));
             } else {
-                groupClassFilter = Filter.createEqualityFilter("objectclass", groupConfig.getObjectClass());
+                SearchResult searchResult = search(LdapMetrics.RETRIEVE_USER_GROUPS, groupConfig.getBaseDN(), SearchScope.SUB, createGroupFilter(userContext.getDn()), "cn");
+                sample.addEntries(searchResult.getEntryCount());
+                groups = toGroups(userContext.getDn(), searchResult);
+            }
+            sample.success();
+            return groups;
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            Set<String> snapshotGroups = getSnapshotGroups(userContext.getDn(), e);
+            if (snapshotGroups != null) {
+                return snapshotGroups;
             }
+            throw e;
+        }
+    }
 
-            Filter filter = Filter.createANDFilter(groupClassFilter, Filter.createEqualityFilter(groupConfig.getMemberAttribute(), userContext.getDn()));
-            LOGGER.debug(filter.toString());
+    @Override
+    public CompletableFuture<Set<String>> retrieveUserGroupsAsync(final LdapUserContext userContext) {
+        final OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.RETRIEVE_USER_GROUPS).start();
+        if (groupConfig.nested().isEnabled() && groupGraph.isLoaded()) {
+            return measure(sample, CompletableFuture.completedFuture(groupGraph.getGroups(userContext.getDn())));
+        }
+        if (directoryReplica.isFresh()) {
+            return measure(sample, CompletableFuture.completedFuture(directoryReplica.getGroups(userContext.getDn())));
+        }
+        Set<String> cachedGroups = ldapCacheManager.getUserGroupsCache().get(userContext.getDn());
+        if (cachedGroups != null) {
+            return measure(sample, CompletableFuture.completedFuture((Set<String>) new HashSet<>(cachedGroups)));
+        }
+        CompletableFuture<Set<String>> future;
+        if (memberOfResolver.isEnabled()) {
+            future = asyncSearch(LdapMetrics.RETRIEVE_USER_GROUPS, userContext.getDn(), SearchScope.BASE, Filter.createPresenceFilter("objectclass"), memberOfResolver.getAttribute())
+                    .thenApplyAsync(searchResult -> {
+                        sample.addEntries(searchResult.getEntryCount());
+                        return cacheGroups(userContext.getDn(), memberOfResolver.getGroups(searchResult.getEntryCount() == 1 ? searchResult.getSearchEntries().get(0) : null));
+                    }, asyncExecutor);
+        } else {
+            future = asyncSearch(LdapMetrics.RETRIEVE_USER_GROUPS, groupConfig.getBaseDN(), SearchScope.SUB, createGroupFilter(userContext.getDn()), "cn")
+                    .thenApplyAsync(searchResult -> {
+                        sample.addEntries(searchResult.getEntryCount());
+                        return toGroups(userContext.getDn(), searchResult);
+                    }, asyncExecutor);
+        }
+        return withFallback(measure(sample, future), throwable -> getSnapshotGroups(userContext.getDn(), throwable));
+    }
+
+    @Override
+    public Stream<String> streamGroups(String filter) {
+        return new PagedSearchIterator<String>(
+                ldapConnectionPool.get(),
+                ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE),
+                circuitBreaker,
+                bulkhead,
+                withResponseTimeout(LdapMetrics.SEARCH_PAGE, new SearchRequest(
+                        groupConfig.getBaseDN(),
+                        SearchScope.SUB,
+                        Filter.createANDFilter(LdapUtils.objectClassFilter(groupConfig.getObjectClass()), parseFilter(filter)),
+                        "cn"
+                )),
+                ldapConfig.getPageSize(),
+                entry -> entry.getAttributeValue("cn")
+        ).stream().filter(name -> name != null);
+    }
+
+    @Override
+    public Stream<String> streamGroupMembers(String group) {
+        final String groupDn = findGroupDn(group);
+        Iterator<String> members = new RangedAttributeIterator(
+                ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE),
+                groupConfig.getMemberAttribute(),
+                requestedAttribute -> getEntry(LdapMetrics.SEARCH_PAGE, groupDn, requestedAttribute)
+        );
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(members, Spliterator.ORDERED), false);
+    }
 
-            SearchResult searchResult = ldapConnectionPool.search(groupConfig.getBaseDN(), SearchScope.SUB, filter, "cn");
+    @Override
+    public Stream<LdapUserContext> streamGroupMemberUsers(String group, String... attributes) {
+        final List<String> userAttributes = toLowerCase(attributes);
+        for (String attribute : getUserAttributes(null)) {
+            if (!userAttributes.contains(attribute)) {
+                userAttributes.add(attribute);
+            }
+        }
+        Iterator<List<String>> memberBatches = Iterators.partition(streamGroupMembers(group).iterator(), userConfig.getBatchSize());
+        Iterator<LdapUserContext> users = Iterators.concat(Iterators.transform(memberBatches, memberDns -> resolveMembers(memberDns, userAttributes).iterator()));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED), false);
+    }
+
+    private String findGroupDn(String group) {
+        Filter filter = Filter.createANDFilter(LdapUtils.objectClassFilter(groupConfig.getObjectClass()), Filter.createEqualityFilter("cn", group));
+        SearchResult searchResult = search(LdapMetrics.SEARCH_PAGE, groupConfig.getBaseDN(), SearchScope.SUB, filter, "cn");
+        if (searchResult.getEntryCount() != 1) {
+            throw SeedException.createNew(LdapErrorCode.UNKNOWN_GROUP)
+                    .put("group", group);
+        }
+        return searchResult.getSearchEntries().get(0).getDN();
+    }
+
+    private List<LdapUserContext> resolveMembers(List<String> memberDns, List<String> userAttributes) {
+        // members are searched by the attributes of their RDN, which are always present in their entry, then matched by DN
+        Set<String> normalizedDns = new HashSet<>();
+        List<Filter> rdnFilters = new ArrayList<>();
+        for (String memberDn : memberDns) {
+            try {
+                DN dn = new DN(memberDn);
+                if (dn.isDescendantOf(userConfig.getBaseDN(), false)) {
+                    RDN rdn = dn.getRDN();
+                    List<Filter> rdnComponents = new ArrayList<>();
+                    for (int i = 0; i < rdn.getAttributeNames().length; i++) {
+                        rdnComponents.add(Filter.createEqualityFilter(rdn.getAttributeNames()[i], rdn.getAttributeValues()[i]));
+                    }
+                    rdnFilters.add(Filter.createANDFilter(rdnComponents));
+                    normalizedDns.add(dn.toNormalizedString());
+                }
+            } catch (LDAPException e) {
+                LOGGER.debug("Ignoring invalid member DN {}", memberDn, e);
+            }
+        }
+        List<LdapUserContext> users = new ArrayList<>();
+        if (rdnFilters.isEmpty()) {
+            return users;
+        }
+        OperationMetrics.Sample sample = ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE).start();
+        try {
+            Filter filter = Filter.createANDFilter(LdapUtils.objectClassFilter(userConfig.getObjectClass()), Filter.createORFilter(rdnFilters));
+            SearchResult searchResult = search(LdapMetrics.SEARCH_PAGE, userConfig.getBaseDN(), SearchScope.SUB, filter, userAttributes.toArray(new String[userAttributes.size()]));
+            sample.addEntries(searchResult.getEntryCount());
             for (SearchResultEntry entry : searchResult.getSearchEntries()) {
-                groups.add(entry.getAttributeValue("cn"));
+                if (normalizedDns.contains(LdapUtils.normalizeDn(entry.getDN()))) {
+                    DefaultLdapUserContext ldapUserContext = internalCreateUser(entry.getDN());
+                    ldapUserContext.setKnownAttributes(toAttributes(entry, userAttributes));
+                    users.add(ldapUserContext);
+                }
             }
-            return groups;
-        } catch (com.unboundid.ldap.sdk.LDAPException e) {
+            sample.success();
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            throw e;
+        }
+        return users;
+    }
+
+    private Filter parseFilter(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return Filter.createPresenceFilter("objectclass");
+        }
+        try {
+            return Filter.create(filter);
+        } catch (LDAPException e) {
+            throw SeedException.wrap(e, LdapErrorCode.INVALID_FILTER).put("filter", filter);
+        }
+    }
+
+    private Filter createGroupFilter(String dn) {
+        Filter filter = Filter.createANDFilter(LdapUtils.objectClassFilter(groupConfig.getObjectClass()), Filter.createEqualityFilter(groupConfig.getMemberAttribute(), dn));
+        LOGGER.debug(filter.toString());
+        return filter;
+    }
+
+    private Set<String> toGroups(String dn, SearchResult searchResult) {
+        Set<String> groups = new HashSet<>();
+        for (SearchResultEntry entry : searchResult.getSearchEntries()) {
+            groups.add(entry.getAttributeValue("cn"));
+        }
+        return cacheGroups(dn, groups);
+    }
+
+    private Set<String> cacheGroups(String dn, Set<String> groups) {
+        ldapCacheManager.getUserGroupsCache().put(dn, Collections.unmodifiableSet(new HashSet<>(groups)));
+        directorySnapshot.recordGroups(dn, groups);
+        return groups;
+    }
+
+    private LdapUserContext getSnapshotUser(String identityAttributeValue, Throwable throwable) {
+        String snapshotDn = LdapUtils.isDirectoryUnavailable(throwable) ? directorySnapshot.getUserDn(identityAttributeValue) : null;
+        if (snapshotDn == null) {
+            return null;
+        }
+        LOGGER.debug("LDAP directory unavailable, using the snapshot DN of user {}", identityAttributeValue);
+        return internalCreateUser(snapshotDn);
+    }
+
+    private Set<String> getSnapshotGroups(String dn, Throwable throwable) {
+        Set<String> snapshotGroups = LdapUtils.isDirectoryUnavailable(throwable) ? directorySnapshot.getGroups(dn) : null;
+        if (snapshotGroups == null) {
+            return null;
+        }
+        LOGGER.debug("LDAP directory unavailable, using the snapshot groups of {}", dn);
+        return new HashSet<>(snapshotGroups);
+    }
+
+    private SearchResult search(String operation, String baseDN, SearchScope scope, Filter filter, String... attributes) {
+        try {
+            // concurrent identical searches share the result of the first one
+            return searchCoalescer.search(baseDN, scope, filter, attributes, () -> {
+                try {
+                    SearchRequest searchRequest = withResponseTimeout(operation, new SearchRequest(baseDN, scope, filter, attributes));
+                    return CompletableFuture.completedFuture(send(operation, ldapConnectionPool.get(), false, connection -> connection.search(searchRequest)));
+                } catch (LDAPException e) {
+                    return failedFuture(SeedException.wrap(e, LdapErrorCode.LDAP_ERROR));
+                }
+            }).join();
+        } catch (CompletionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private SearchResultEntry getEntry(String operation, String dn, String... attributes) {
+        final SearchRequest searchRequest = withResponseTimeout(operation, new SearchRequest(dn, SearchScope.BASE, Filter.createPresenceFilter("objectclass"), attributes));
+        try {
+            return send(operation, ldapConnectionPool.get(), false, connection -> {
+                try {
+                    return connection.searchForEntry(searchRequest);
+                } catch (LDAPSearchException e) {
+                    if (ResultCode.NO_SUCH_OBJECT.equals(e.getResultCode())) {
+                        return null;
+                    }
+                    throw e;
+                }
+            });
+        } catch (LDAPException e) {
             throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
         }
     }
+
+    private CompletableFuture<SearchResult> asyncSearch(String operation, String baseDN, SearchScope scope, Filter filter, String... attributes) {
+        return searchCoalescer.search(baseDN, scope, filter, attributes, () -> bulkhead.callAsync(operation, () -> sendAsyncSearch(operation, baseDN, scope, filter, attributes)));
+    }
+
+    private CompletableFuture<SearchResult> sendAsyncSearch(String operation, String baseDN, SearchScope scope, Filter filter, String... attributes) {
+        final LDAPConnectionPool pool;
+        final LDAPConnection connection;
+        try {
+            pool = ldapConnectionPool.get();
+            connection = checkout(pool);
+        } catch (LDAPException e) {
+            return failedFuture(SeedException.wrap(e, LdapErrorCode.LDAP_ERROR));
+        } catch (SeedException e) {
+            return failedFuture(e);
+        }
+        final AsyncSearchCollector collector = new AsyncSearchCollector();
+        CompletableFuture<SearchResult> future;
+        try {
+            // requests waiting for a connection don't count as slow for the circuit breaker
+            future = circuitBreaker.callAsync(operation, () -> {
+                try {
+                    connection.asyncSearch(withResponseTimeout(operation, new SearchRequest(collector, baseDN, scope, filter, attributes)));
+                } catch (LDAPException e) {
+                    collector.searchFailed(e);
+                }
+                return collector.getFuture();
+            });
+        } catch (RuntimeException e) {
+            pool.releaseConnection(connection);
+            throw e;
+        }
+        // the connection stays checked out while the search is in flight, so that it isn't handed to another request
+        return future.whenComplete((searchResult, throwable) -> {
+            if (collector.isConnectionUsable()) {
+                pool.releaseConnection(connection);
+            } else {
+                pool.releaseDefunctConnection(connection);
+            }
+        });
+    }
+
+    private <T> T send(String operation, LDAPConnectionPool pool, boolean reAuthenticate, ConnectionRequest<T> request) throws LDAPException {
+        // requests waiting for a connection of their compartment don't count as slow for the circuit breaker
+        return bulkhead.call(operation, () -> sendOnConnection(operation, pool, reAuthenticate, request));
+    }
+
+    private <T> T sendOnConnection(String operation, LDAPConnectionPool pool, boolean reAuthenticate, ConnectionRequest<T> request) throws LDAPException {
+        // nor do those waiting for a connection of the pool
+        LDAPConnection connection = checkout(pool);
+        T response;
+        try {
+            response = circuitBreaker.call(operation, () -> request.send(connection));
+        } catch (LDAPException e) {
+            if (ResultCode.isConnectionUsable(e.getResultCode())) {
+                release(pool, connection, reAuthenticate);
+            } else {
+                pool.releaseDefunctConnection(connection);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            release(pool, connection, reAuthenticate);
+            throw e;
+        }
+        release(pool, connection, reAuthenticate);
+        return response;
+    }
+
+    private static LDAPConnection checkout(LDAPConnectionPool pool) throws LDAPException {
+        PoolMetrics.startCheckout();
+        try {
+            return pool.getConnection();
+        } finally {
+            PoolMetrics.endCheckout();
+        }
+    }
+
+    private static void release(LDAPConnectionPool pool, LDAPConnection connection, boolean reAuthenticate) {
+        if (reAuthenticate) {
+            // connections of the main pool used for user binds are bound back to the service account
+            pool.releaseAndReAuthenticateConnection(connection);
+        } else {
+            pool.releaseConnection(connection);
+        }
+    }
+
+    private <T extends LDAPRequest> T withResponseTimeout(String operation, T request) {
+        // background loads keep the default response timeout of connections, as they may legitimately take long
+        request.setResponseTimeoutMillis(ldapConfig.timeout().getResponseTime(operation));
+        return request;
+    }
+
+    private static <T> CompletableFuture<T> measure(final OperationMetrics.Sample sample, CompletableFuture<T> future) {
+        return future.whenComplete((result, throwable) -> sample.complete(throwable));
+    }
+
+    private static <T> CompletableFuture<T> withFallback(CompletableFuture<T> future, Function<Throwable, T> fallback) {
+        return future.handle((result, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            T fallbackResult = fallback.apply(throwable);
+            return fallbackResult != null ? CompletableFuture.completedFuture(fallbackResult) : DefaultLdapService.<T>failedFuture(throwable);
+        }).thenCompose(result -> result);
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        return e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * A request to the LDAP directory sent on a checked out connection.
+     *
+     * @param <T> the type of the response.
+     */
+    private interface ConnectionRequest<T> {
+        T send(LDAPConnection connection) throws LDAPException;
+    }
 }
@@ -9,12 +9,29 @@ package org.seedstack.ldap.internal;
 
 import org.seedstack.ldap.LdapUserContext;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
+/**
+ * The context of a user, which may be shared by concurrent requests of the same session. Attribute names are lower-cased.
+ * Attributes absent from the user entry are remembered as such, so they are retrieved only once.
+ */
 class DefaultLdapUserContext implements LdapUserContext {
     private final String dn;
-    private final Map<String, String> knownAttributes = new HashMap<>();
+    private final ConcurrentMap<String, String> knownAttributes = new ConcurrentHashMap<>();
+    private final Set<String> absentAttributes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private transient ConcurrentMap<String, CompletableFuture<Void>> pendingAttributes = new ConcurrentHashMap<>();
 
     DefaultLdapUserContext(String dn) {
         this.dn = dn;
@@ -25,7 +42,106 @@ class DefaultLdapUserContext implements LdapUserContext {
         return dn;
     }
 
+    /**
+     * @param attribute the lower-cased name of the attribute.
+     * @return true if the value or the absence of the attribute is known.
+     */
+    boolean isKnown(String attribute) {
+        return knownAttributes.containsKey(attribute) || absentAttributes.contains(attribute);
+    }
+
+    /**
+     * @param attribute the lower-cased name of the attribute.
+     * @return the value of the attribute, or null if it is absent or not yet retrieved.
+     */
+    String getAttribute(String attribute) {
+        return knownAttributes.get(attribute);
+    }
+
+    /**
+     * @param attribute the lower-cased name of the attribute.
+     * @param value     the value of the attribute, null if the attribute is absent from the user entry.
+     */
+    void setAttribute(String attribute, String value) {
+        if (value == null) {
+            absentAttributes.add(attribute);
+            knownAttributes.remove(attribute);
+        } else {
+            knownAttributes.put(attribute, value);
+            absentAttributes.remove(attribute);
+        }
+    }
+
+    /**
+     * @return a snapshot of the known attributes, absent attributes having a null value.
+     */
     Map<String, String> getKnownAttributes() {
-        return knownAttributes;
+        Map<String, String> attributes = new HashMap<>(knownAttributes);
+        for (String absentAttribute : absentAttributes) {
+            attributes.put(absentAttribute, null);
+        }
+        return attributes;
+    }
+
+    /**
+     * @param attributes the attributes to add to the known ones, absent attributes having a null value.
+     */
+    void setKnownAttributes(Map<String, String> attributes) {
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            setAttribute(attribute.getKey(), attribute.getValue());
+        }
+    }
+
+    /**
+     * Retrieves the attributes that are not yet known. Attributes already being retrieved by a concurrent call are not
+     * retrieved again: the returned future completes when that call completes.
+     *
+     * @param attributes the lower-cased names of the attributes.
+     * @param loader     the function retrieving the given attributes, by name.
+     * @return a future completed when all the attributes are known.
+     */
+    CompletableFuture<Void> load(Collection<String> attributes, Function<List<String>, CompletableFuture<Map<String, String>>> loader) {
+        final CompletableFuture<Void> loading = new CompletableFuture<>();
+        final List<String> attributesToLoad = new ArrayList<>();
+        List<CompletableFuture<Void>> pendingLoads = new ArrayList<>();
+        for (String attribute : attributes) {
+            if (!isKnown(attribute)) {
+                CompletableFuture<Void> pendingLoad = pendingAttributes.putIfAbsent(attribute, loading);
+                if (pendingLoad == null) {
+                    attributesToLoad.add(attribute);
+                } else if (!pendingLoads.contains(pendingLoad)) {
+                    pendingLoads.add(pendingLoad);
+                }
+            }
+        }
+        if (!attributesToLoad.isEmpty()) {
+            CompletableFuture<Map<String, String>> values;
+            try {
+                values = loader.apply(attributesToLoad);
+            } catch (RuntimeException e) {
+                values = new CompletableFuture<>();
+                values.completeExceptionally(e);
+            }
+            values.whenComplete((result, throwable) -> {
+                for (String attribute : attributesToLoad) {
+                    if (throwable == null) {
+                        setAttribute(attribute, result.get(attribute));
+                    }
+                    pendingAttributes.remove(attribute, loading);
+                }
+                if (throwable == null) {
+                    loading.complete(null);
+                } else {
+                    loading.completeExceptionally(throwable);
+                }
+            });
+            pendingLoads.add(loading);
+        }
+        return CompletableFuture.allOf(pendingLoads.toArray(new CompletableFuture<?>[pendingLoads.size()]));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        pendingAttributes = new ConcurrentHashMap<>();
     }
 }
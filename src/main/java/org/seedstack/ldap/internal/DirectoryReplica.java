@@ -0,0 +1,613 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.IntermediateResponse;
+import com.unboundid.ldap.sdk.IntermediateResponseListener;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoIntermediateResponse;
+import com.unboundid.ldap.sdk.controls.ContentSyncInfoType;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestControl;
+import com.unboundid.ldap.sdk.controls.ContentSyncRequestMode;
+import com.unboundid.ldap.sdk.controls.ContentSyncStateControl;
+import com.unboundid.ldap.sdk.controls.EntryChangeNotificationControl;
+import com.unboundid.ldap.sdk.controls.PersistentSearchChangeType;
+import com.unboundid.ldap.sdk.controls.PersistentSearchRequestControl;
+import com.unboundid.util.StaticUtils;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.seed.SeedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Provider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory replica of the users and group memberships of the directory. The replica is fully loaded at startup and then kept
+ * up to date by content synchronization or persistent search when the directory supports it, or by polling entries on their
+ * modification timestamp otherwise. Lookups should only be done on the replica when {@link #isFresh()} returns true.
+ * The persistent search is started before each full load, the changes it pushes during the load being replayed on the loaded
+ * state, while content synchronization loads the replica from the refresh phase of its own searches. Push synchronized replicas
+ * are only fresh once loaded since their searches started. Polled replicas only see deletions on full reloads, so their full
+ * reload interval can't exceed their maximum staleness.
+ */
+class DirectoryReplica {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryReplica.class);
+    private static final String MODIFY_TIMESTAMP = "modifyTimestamp";
+    private final LdapConfig ldapConfig;
+    private final Provider<LDAPConnectionPool> ldapConnectionPool;
+    private final PagedSearcher pagedSearcher;
+    private final LdapConnectionFactory connectionFactory;
+    private final Set<String> userAttributes = new LinkedHashSet<>();
+    private final Object changeLock = new Object();
+    private volatile State state = new State();
+    private List<PushedChange> pushedChanges;
+    private State refreshingState;
+    private int pendingRefreshes;
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private volatile long lastSyncNanos;
+    private volatile boolean pushActive;
+    private volatile boolean pushSynchronized;
+    private volatile LdapConfig.ReplicaSyncMode syncMode;
+    private volatile LDAPConnection pushConnection;
+    private Date lastModifyTimestamp;
+    private long lastFullReloadNanos;
+
+    DirectoryReplica(LdapConfig ldapConfig, Provider<LDAPConnectionPool> ldapConnectionPool, PagedSearcher pagedSearcher, LdapConnectionFactory connectionFactory) {
+        this.ldapConfig = ldapConfig;
+        this.ldapConnectionPool = ldapConnectionPool;
+        this.pagedSearcher = pagedSearcher;
+        this.connectionFactory = connectionFactory;
+        this.userAttributes.add("cn");
+        for (String additionalAttribute : ldapConfig.user().getAdditionalAttributes()) {
+            this.userAttributes.add(additionalAttribute.toLowerCase());
+        }
+        for (Set<String> prefetchProfile : ldapConfig.user().getPrefetchProfiles().values()) {
+            for (String prefetchAttribute : prefetchProfile) {
+                this.userAttributes.add(prefetchAttribute.toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Loads the replica and starts the synchronization with the directory.
+     */
+    synchronized void start() {
+        syncMode = resolveSyncMode();
+        LdapConfig.ReplicaConfig replicaConfig = ldapConfig.replica();
+        if (syncMode == LdapConfig.ReplicaSyncMode.POLLING && replicaConfig.getFullReloadInterval() > replicaConfig.getMaxStaleness()) {
+            throw SeedException.createNew(LdapErrorCode.INVALID_REPLICA)
+                    .put("fullReloadInterval", replicaConfig.getFullReloadInterval())
+                    .put("maxStaleness", replicaConfig.getMaxStaleness());
+        }
+        LOGGER.info("Replicating LDAP users and groups in memory with {} synchronization", syncMode);
+        if (syncMode == LdapConfig.ReplicaSyncMode.POLLING) {
+            reload();
+        } else {
+            startPushAndReload();
+        }
+        started = true;
+    }
+
+    /**
+     * Checks the synchronization with the directory, or retries to start it if the initial load failed. Must be called
+     * periodically.
+     */
+    synchronized void synchronize() {
+        if (stopped) {
+            return;
+        }
+        if (!started) {
+            start();
+            return;
+        }
+        if (syncMode == LdapConfig.ReplicaSyncMode.POLLING) {
+            long sinceFullReload = System.nanoTime() - lastFullReloadNanos;
+            if (lastModifyTimestamp == null || sinceFullReload >= TimeUnit.SECONDS.toNanos(ldapConfig.replica().getFullReloadInterval())) {
+                reload();
+            } else {
+                poll();
+            }
+        } else if (!pushActive) {
+            // changes may have been missed while the push search was down
+            startPushAndReload();
+        }
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        started = false;
+        stopPush();
+    }
+
+    /**
+     * Tells if the replica is synchronized enough to be used instead of the directory.
+     *
+     * @return true if lookups can be done on the replica.
+     */
+    boolean isFresh() {
+        if (!started) {
+            return false;
+        }
+        if (syncMode != LdapConfig.ReplicaSyncMode.POLLING) {
+            // changes are missed while the push searches are down, until they are restarted and the replica loaded again
+            return pushSynchronized;
+        }
+        return System.nanoTime() - lastSyncNanos < TimeUnit.SECONDS.toNanos(ldapConfig.replica().getMaxStaleness());
+    }
+
+    /**
+     * Tells if all the specified attributes are replicated.
+     *
+     * @param attributes the lower-cased attribute names.
+     * @return true if all attributes are replicated, false otherwise.
+     */
+    boolean hasAttributes(Iterable<String> attributes) {
+        for (String attribute : attributes) {
+            if (!userAttributes.contains(attribute)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    UserEntry findUser(String identityAttributeValue) {
+        return state.usersByIdentity.get(identityAttributeValue.toLowerCase());
+    }
+
+    UserEntry findUserByDn(String dn) {
+        State current = state;
+        String identity = current.identitiesByDn.get(LdapUtils.normalizeDn(dn));
+        return identity == null ? null : current.usersByIdentity.get(identity);
+    }
+
+    Set<String> getGroups(String memberDn) {
+        State current = state;
+        Set<String> groups = new HashSet<>();
+        Set<String> groupDns = current.groupsByMember.get(LdapUtils.normalizeDn(memberDn));
+        if (groupDns != null) {
+            for (String groupDn : groupDns) {
+                GroupEntry groupEntry = current.groupsByDn.get(groupDn);
+                if (groupEntry != null) {
+                    groups.add(groupEntry.name);
+                }
+            }
+        }
+        return groups;
+    }
+
+    private LdapConfig.ReplicaSyncMode resolveSyncMode() {
+        LdapConfig.ReplicaSyncMode configuredMode = ldapConfig.replica().getSyncMode();
+        if (configuredMode != LdapConfig.ReplicaSyncMode.AUTO) {
+            return configuredMode;
+        }
+        try {
+            RootDSE rootDSE = ldapConnectionPool.get().getRootDSE();
+            if (rootDSE != null && rootDSE.supportsControl(ContentSyncRequestControl.SYNC_REQUEST_OID)) {
+                return LdapConfig.ReplicaSyncMode.CONTENT_SYNC;
+            } else if (rootDSE != null && rootDSE.supportsControl(PersistentSearchRequestControl.PERSISTENT_SEARCH_REQUEST_OID)) {
+                return LdapConfig.ReplicaSyncMode.PERSISTENT_SEARCH;
+            }
+        } catch (LDAPException e) {
+            LOGGER.warn("Unable to read the LDAP root DSE, falling back to polling", e);
+        }
+        return LdapConfig.ReplicaSyncMode.POLLING;
+    }
+
+    private void startPushAndReload() {
+        // the push search is started first, so that the changes done while loading are not missed
+        startPush();
+        if (!pushActive || syncMode == LdapConfig.ReplicaSyncMode.CONTENT_SYNC) {
+            // failed push searches are retried on next synchronization, content synchronization loads the replica by itself
+            return;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            stopPush();
+            throw e;
+        }
+        synchronized (changeLock) {
+            pushSynchronized = pushActive;
+        }
+    }
+
+    private void reload() {
+        State newState = new State();
+        Date maxModifyTimestamp = null;
+        synchronized (changeLock) {
+            pushedChanges = new ArrayList<>();
+        }
+        try {
+            try (PagedSearchIterator<SearchResultEntry> entries = pagedSearcher.search(ldapConfig.user().getBaseDN(), userFilter(), getSearchedUserAttributes())) {
+                while (entries.hasNext()) {
+                    SearchResultEntry entry = entries.next();
+                    newState.putUser(entry);
+                    maxModifyTimestamp = latest(maxModifyTimestamp, entry);
+                }
+            }
+            try (PagedSearchIterator<SearchResultEntry> entries = pagedSearcher.search(ldapConfig.group().getBaseDN(), groupFilter(), getSearchedGroupAttributes())) {
+                while (entries.hasNext()) {
+                    SearchResultEntry entry = entries.next();
+                    newState.putGroup(entry);
+                    maxModifyTimestamp = latest(maxModifyTimestamp, entry);
+                }
+            }
+            synchronized (changeLock) {
+                // the loaded entries may predate the changes pushed meanwhile
+                for (PushedChange pushedChange : pushedChanges) {
+                    applyChange(newState, pushedChange.entry, pushedChange.group);
+                }
+                state = newState;
+            }
+        } finally {
+            synchronized (changeLock) {
+                pushedChanges = null;
+            }
+        }
+        lastModifyTimestamp = maxModifyTimestamp;
+        lastFullReloadNanos = System.nanoTime();
+        lastSyncNanos = lastFullReloadNanos;
+        if (maxModifyTimestamp == null && syncMode == LdapConfig.ReplicaSyncMode.POLLING) {
+            LOGGER.warn("LDAP entries have no {} attribute, the replica will only be updated by full reloads", MODIFY_TIMESTAMP);
+        }
+        LOGGER.debug("Loaded {} users and {} groups in the LDAP replica", newState.usersByIdentity.size(), newState.groupsByDn.size());
+    }
+
+    private void poll() {
+        Filter modifiedFilter = Filter.createGreaterOrEqualFilter(MODIFY_TIMESTAMP, StaticUtils.encodeGeneralizedTime(lastModifyTimestamp));
+        Date maxModifyTimestamp = lastModifyTimestamp;
+        State current = state;
+        try (PagedSearchIterator<SearchResultEntry> entries = pagedSearcher.search(ldapConfig.user().getBaseDN(), Filter.createANDFilter(userFilter(), modifiedFilter), getSearchedUserAttributes())) {
+            while (entries.hasNext()) {
+                SearchResultEntry entry = entries.next();
+                current.putUser(entry);
+                maxModifyTimestamp = latest(maxModifyTimestamp, entry);
+            }
+        }
+        try (PagedSearchIterator<SearchResultEntry> entries = pagedSearcher.search(ldapConfig.group().getBaseDN(), Filter.createANDFilter(groupFilter(), modifiedFilter), getSearchedGroupAttributes())) {
+            while (entries.hasNext()) {
+                SearchResultEntry entry = entries.next();
+                current.putGroup(entry);
+                maxModifyTimestamp = latest(maxModifyTimestamp, entry);
+            }
+        }
+        lastModifyTimestamp = maxModifyTimestamp;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private void startPush() {
+        stopPush();
+        Control control;
+        if (syncMode == LdapConfig.ReplicaSyncMode.CONTENT_SYNC) {
+            // without cookie, the refresh phase returns all the entries before the changes are persisted
+            control = new ContentSyncRequestControl(ContentSyncRequestMode.REFRESH_AND_PERSIST);
+        } else {
+            control = new PersistentSearchRequestControl(PersistentSearchChangeType.allChangeTypes(), true, true);
+        }
+        try {
+            // push searches never end, so they use their own connection instead of holding pooled ones
+            LDAPConnection connection = connectionFactory.createConnection();
+            PushListener userListener = new PushListener(connection, false);
+            SearchRequest userRequest = new SearchRequest(userListener, ldapConfig.user().getBaseDN(), SearchScope.SUB, userFilter(), getSearchedUserAttributes());
+            userRequest.addControl(control);
+            userRequest.setIntermediateResponseListener(userListener);
+            PushListener groupListener = new PushListener(connection, true);
+            SearchRequest groupRequest = new SearchRequest(groupListener, ldapConfig.group().getBaseDN(), SearchScope.SUB, groupFilter(), getSearchedGroupAttributes());
+            groupRequest.addControl(control);
+            groupRequest.setIntermediateResponseListener(groupListener);
+            synchronized (changeLock) {
+                pushConnection = connection;
+                pushActive = true;
+                if (syncMode == LdapConfig.ReplicaSyncMode.CONTENT_SYNC) {
+                    refreshingState = new State();
+                    pendingRefreshes = 2;
+                }
+            }
+            connection.asyncSearch(userRequest);
+            connection.asyncSearch(groupRequest);
+        } catch (LDAPException e) {
+            LOGGER.warn("Unable to start LDAP {} synchronization, will retry later", syncMode, e);
+            stopPush();
+        }
+    }
+
+    private void stopPush() {
+        LDAPConnection connection;
+        synchronized (changeLock) {
+            connection = pushConnection;
+            pushConnection = null;
+            pushActive = false;
+            pushSynchronized = false;
+            refreshingState = null;
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void applyChange(State target, SearchResultEntry entry, boolean group) {
+        try {
+            if (syncMode == LdapConfig.ReplicaSyncMode.CONTENT_SYNC) {
+                ContentSyncStateControl stateControl = ContentSyncStateControl.get(entry);
+                if (stateControl == null) {
+                    target.put(entry, null, group);
+                } else {
+                    switch (stateControl.getState()) {
+                        case DELETE:
+                            target.remove(entry.getDN(), stateControl.getEntryUUID());
+                            break;
+                        default:
+                            target.put(entry, stateControl.getEntryUUID(), group);
+                            break;
+                    }
+                }
+            } else {
+                EntryChangeNotificationControl changeControl = EntryChangeNotificationControl.get(entry);
+                if (changeControl != null && changeControl.getChangeType() == PersistentSearchChangeType.DELETE) {
+                    target.remove(entry.getDN(), null);
+                } else {
+                    if (changeControl != null && changeControl.getPreviousDN() != null) {
+                        target.remove(changeControl.getPreviousDN(), null);
+                    }
+                    target.put(entry, null, group);
+                }
+            }
+        } catch (LDAPException e) {
+            LOGGER.warn("Unable to decode LDAP change notification for entry {}", entry.getDN(), e);
+        }
+    }
+
+    private Filter userFilter() {
+        return LdapUtils.objectClassFilter(ldapConfig.user().getObjectClass());
+    }
+
+    private Filter groupFilter() {
+        return LdapUtils.objectClassFilter(ldapConfig.group().getObjectClass());
+    }
+
+    private String[] getSearchedUserAttributes() {
+        Set<String> attributes = new LinkedHashSet<>(userAttributes);
+        attributes.add(ldapConfig.user().getIdAttribute());
+        attributes.add(MODIFY_TIMESTAMP);
+        return attributes.toArray(new String[attributes.size()]);
+    }
+
+    private String[] getSearchedGroupAttributes() {
+        return new String[]{"cn", ldapConfig.group().getMemberAttribute(), MODIFY_TIMESTAMP};
+    }
+
+    private static Date latest(Date current, SearchResultEntry entry) {
+        Date modifyTimestamp = entry.getAttributeValueAsDate(MODIFY_TIMESTAMP);
+        if (modifyTimestamp != null && (current == null || modifyTimestamp.after(current))) {
+            return modifyTimestamp;
+        }
+        return current;
+    }
+
+    private class PushListener implements AsyncSearchResultListener, IntermediateResponseListener {
+        private static final long serialVersionUID = 1L;
+        private final transient LDAPConnection connection;
+        private final boolean group;
+        private boolean refreshing;
+
+        private PushListener(LDAPConnection connection, boolean group) {
+            this.connection = connection;
+            this.group = group;
+            this.refreshing = syncMode == LdapConfig.ReplicaSyncMode.CONTENT_SYNC;
+        }
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry entry) {
+            synchronized (changeLock) {
+                // notifications of a replaced connection may still be received after it is closed
+                if (connection != pushConnection) {
+                    return;
+                }
+                if (refreshingState != null) {
+                    applyChange(refreshingState, entry, group);
+                    return;
+                }
+                if (pushedChanges != null) {
+                    pushedChanges.add(new PushedChange(entry, group));
+                }
+                applyChange(state, entry, group);
+            }
+        }
+
+        @Override
+        public void intermediateResponseReturned(IntermediateResponse intermediateResponse) {
+            ContentSyncInfoIntermediateResponse syncInfo;
+            try {
+                syncInfo = ContentSyncInfoIntermediateResponse.decode(intermediateResponse);
+            } catch (LDAPException e) {
+                LOGGER.warn("Unable to decode LDAP synchronization info message", e);
+                return;
+            }
+            synchronized (changeLock) {
+                if (connection != pushConnection) {
+                    return;
+                }
+                State target = refreshingState != null ? refreshingState : state;
+                if (syncInfo.getType() == ContentSyncInfoType.SYNC_ID_SET && syncInfo.refreshDeletes()) {
+                    for (UUID uuid : syncInfo.getEntryUUIDs()) {
+                        target.remove(uuid);
+                    }
+                } else if (refreshing && syncInfo.getType() != ContentSyncInfoType.NEW_COOKIE && syncInfo.refreshDone()) {
+                    refreshing = false;
+                    if (--pendingRefreshes == 0 && refreshingState != null) {
+                        state = refreshingState;
+                        refreshingState = null;
+                        lastFullReloadNanos = System.nanoTime();
+                        lastSyncNanos = lastFullReloadNanos;
+                        pushSynchronized = true;
+                        LOGGER.debug("Loaded {} users and {} groups in the LDAP replica", state.usersByIdentity.size(), state.groupsByDn.size());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference searchReference) {
+            // referrals are not followed
+        }
+
+        @Override
+        public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+            synchronized (changeLock) {
+                if (connection != pushConnection) {
+                    return;
+                }
+                pushActive = false;
+                pushSynchronized = false;
+                refreshingState = null;
+            }
+            LOGGER.warn("LDAP {} synchronization ended with {}, falling back to the directory until resynchronized", syncMode, searchResult.getResultCode());
+        }
+    }
+
+    private class State {
+        private final Map<String, UserEntry> usersByIdentity = new ConcurrentHashMap<>();
+        private final Map<String, String> identitiesByDn = new ConcurrentHashMap<>();
+        private final Map<String, GroupEntry> groupsByDn = new ConcurrentHashMap<>();
+        private final Map<String, Set<String>> groupsByMember = new ConcurrentHashMap<>();
+        private final Map<UUID, String> dnsByUuid = new HashMap<>();
+
+        private synchronized void put(SearchResultEntry entry, UUID uuid, boolean group) {
+            if (uuid != null) {
+                // renamed entries keep their UUID but change their DN
+                String dn = LdapUtils.normalizeDn(entry.getDN());
+                String previousDn = dnsByUuid.put(uuid, dn);
+                if (previousDn != null && !previousDn.equals(dn)) {
+                    remove(previousDn);
+                }
+            }
+            if (group) {
+                putGroup(entry);
+            } else {
+                putUser(entry);
+            }
+        }
+
+        private synchronized void remove(UUID uuid) {
+            String knownDn = dnsByUuid.remove(uuid);
+            if (knownDn != null) {
+                remove(knownDn);
+            }
+        }
+
+        private synchronized void remove(String dn, UUID uuid) {
+            if (uuid != null) {
+                remove(uuid);
+            }
+            remove(LdapUtils.normalizeDn(dn));
+        }
+
+        private synchronized void putUser(SearchResultEntry entry) {
+            String identity = entry.getAttributeValue(ldapConfig.user().getIdAttribute());
+            if (identity == null) {
+                return;
+            }
+            String dn = LdapUtils.normalizeDn(entry.getDN());
+            String previousIdentity = identitiesByDn.put(dn, identity.toLowerCase());
+            if (previousIdentity != null && !previousIdentity.equals(identity.toLowerCase())) {
+                usersByIdentity.remove(previousIdentity);
+            }
+            Map<String, String> attributes = new HashMap<>();
+            for (String attribute : userAttributes) {
+                attributes.put(attribute, entry.getAttributeValue(attribute));
+            }
+            usersByIdentity.put(identity.toLowerCase(), new UserEntry(entry.getDN(), attributes));
+        }
+
+        private synchronized void putGroup(SearchResultEntry entry) {
+            String dn = LdapUtils.normalizeDn(entry.getDN());
+            removeGroup(dn);
+            Set<String> members = new HashSet<>();
+            String[] memberValues = entry.getAttributeValues(ldapConfig.group().getMemberAttribute());
+            if (memberValues != null) {
+                for (String member : memberValues) {
+                    String memberDn = LdapUtils.normalizeDn(member);
+                    members.add(memberDn);
+                    Set<String> memberGroups = groupsByMember.get(memberDn);
+                    if (memberGroups == null) {
+                        memberGroups = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                        groupsByMember.put(memberDn, memberGroups);
+                    }
+                    memberGroups.add(dn);
+                }
+            }
+            groupsByDn.put(dn, new GroupEntry(entry.getAttributeValue("cn"), members));
+        }
+
+        private void remove(String normalizedDn) {
+            String identity = identitiesByDn.remove(normalizedDn);
+            if (identity != null) {
+                usersByIdentity.remove(identity);
+            }
+            removeGroup(normalizedDn);
+        }
+
+        private void removeGroup(String normalizedDn) {
+            GroupEntry previous = groupsByDn.remove(normalizedDn);
+            if (previous != null) {
+                for (String member : previous.members) {
+                    Set<String> memberGroups = groupsByMember.get(member);
+                    if (memberGroups != null) {
+                        memberGroups.remove(normalizedDn);
+                    }
+                }
+            }
+        }
+
+    }
+
+    private static class PushedChange {
+        private final SearchResultEntry entry;
+        private final boolean group;
+
+        private PushedChange(SearchResultEntry entry, boolean group) {
+            this.entry = entry;
+            this.group = group;
+        }
+    }
+
+    private static class GroupEntry {
+        private final String name;
+        private final Set<String> members;
+
+        private GroupEntry(String name, Set<String> members) {
+            this.name = name;
+            this.members = members;
+        }
+    }
+}
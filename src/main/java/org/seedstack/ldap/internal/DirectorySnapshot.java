@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.seed.SeedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the DN of the users found and their group memberships, and persists them periodically to a memory-mapped file.
+ * The file is loaded at startup to warm the group membership cache, and memberships are used when the directory cannot be
+ * reached, so that users already authenticated stay authorized. Memberships older than the maximum age are never used and are
+ * pruned on each write. Beyond the maximum size, the least recently used users and memberships are forgotten.
+ * <p>
+ * The file starts with a header (magic number, format version, write time), followed by the table of distinct group names,
+ * the DN of each identity, then the groups of each DN as indexes in the group table with the time they were retrieved.
+ */
+class DirectorySnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshot.class);
+    private static final int MAGIC = 0x4c44534e;
+    private static final int VERSION = 1;
+    private final boolean enabled;
+    private final Path path;
+    private final long maxAgeMillis;
+    private final int maxSize;
+    private final Map<String, String> userDns;
+    private final Map<String, Membership> memberships;
+
+    DirectorySnapshot(LdapConfig.SnapshotConfig snapshotConfig) {
+        this.enabled = snapshotConfig.isEnabled();
+        if (enabled && snapshotConfig.getPath() == null) {
+            throw SeedException.createNew(LdapErrorCode.NO_SNAPSHOT_PATH);
+        }
+        this.path = enabled ? Paths.get(snapshotConfig.getPath()) : null;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(snapshotConfig.getMaxAge());
+        this.maxSize = snapshotConfig.getMaxSize();
+        this.userDns = createLruMap(maxSize);
+        this.memberships = createLruMap(maxSize);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void recordUser(String identityAttributeValue, String dn) {
+        if (enabled) {
+            userDns.put(identityAttributeValue, dn);
+        }
+    }
+
+    void recordGroups(String dn, Set<String> groups) {
+        if (enabled) {
+            memberships.put(dn, new Membership(Collections.unmodifiableSet(new HashSet<>(groups)), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * @param identityAttributeValue the value of the identifying attribute of the user.
+     * @return the DN of the user, or null if it is unknown.
+     */
+    String getUserDn(String identityAttributeValue) {
+        return enabled ? userDns.get(identityAttributeValue) : null;
+    }
+
+    /**
+     * @param dn the DN of the user.
+     * @return the groups of the user, or null if they are unknown or too old.
+     */
+    Set<String> getGroups(String dn) {
+        Membership membership = enabled ? memberships.get(dn) : null;
+        return membership != null && isRecent(membership) ? membership.groups : null;
+    }
+
+    /**
+     * Loads the snapshot file if it exists, skipping the memberships that are too old.
+     *
+     * @return the recent memberships loaded, by DN.
+     */
+    Map<String, Membership> load() {
+        Map<String, Membership> loadedMemberships = new HashMap<>();
+        if (!enabled || !Files.exists(path)) {
+            return loadedMemberships;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOGGER.warn("Ignoring LDAP snapshot {} written in an unknown format", path);
+                return loadedMemberships;
+            }
+            long writeTime = buffer.getLong();
+            String[] groupNames = new String[buffer.getInt()];
+            for (int i = 0; i < groupNames.length; i++) {
+                groupNames[i] = readString(buffer);
+            }
+            int userCount = buffer.getInt();
+            for (int i = 0; i < userCount; i++) {
+                recordUser(readString(buffer), readString(buffer));
+            }
+            int membershipCount = buffer.getInt();
+            for (int i = 0; i < membershipCount; i++) {
+                String dn = readString(buffer);
+                Set<String> groups = new HashSet<>();
+                int groupCount = buffer.getInt();
+                for (int j = 0; j < groupCount; j++) {
+                    groups.add(groupNames[buffer.getInt()]);
+                }
+                Membership membership = new Membership(Collections.unmodifiableSet(groups), buffer.getLong());
+                if (isRecent(membership)) {
+                    memberships.putIfAbsent(dn, membership);
+                    loadedMemberships.put(dn, membership);
+                }
+            }
+            LOGGER.info("Loaded {} LDAP group membership(s) from snapshot {} written {} second(s) ago", loadedMemberships.size(), path, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - writeTime));
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            LOGGER.warn("Unable to load LDAP snapshot {}, ignoring it", path, e);
+        }
+        return loadedMemberships;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file which then replaces the snapshot file, so that a crash during the write never
+     * leaves a truncated snapshot.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    void write() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Integer> groupIndexes = new HashMap<>();
+        List<byte[]> groupNames = new ArrayList<>();
+        Map<String, String> users;
+        synchronized (userDns) {
+            users = new HashMap<>(userDns);
+        }
+        Map<String, Membership> recentMemberships = new HashMap<>();
+        synchronized (memberships) {
+            Iterator<Membership> iterator = memberships.values().iterator();
+            while (iterator.hasNext()) {
+                if (!isRecent(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            recentMemberships.putAll(memberships);
+        }
+        long size = 4 + 4 + 8 + 4 + 4 + 4;
+        for (Map.Entry<String, String> user : users.entrySet()) {
+            size += sizeOf(user.getKey()) + sizeOf(user.getValue());
+        }
+        for (Map.Entry<String, Membership> membership : recentMemberships.entrySet()) {
+            size += sizeOf(membership.getKey()) + 4 + 4L * membership.getValue().groups.size() + 8;
+            for (String group : membership.getValue().groups) {
+                if (!groupIndexes.containsKey(group)) {
+                    groupIndexes.put(group, groupNames.size());
+                    byte[] groupName = group.getBytes(StandardCharsets.UTF_8);
+                    groupNames.add(groupName);
+                    size += 4 + groupName.length;
+                }
+            }
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+                buffer.putInt(groupNames.size());
+                for (byte[] groupName : groupNames) {
+                    buffer.putInt(groupName.length).put(groupName);
+                }
+                buffer.putInt(users.size());
+                for (Map.Entry<String, String> user : users.entrySet()) {
+                    writeString(buffer, user.getKey());
+                    writeString(buffer, user.getValue());
+                }
+                buffer.putInt(recentMemberships.size());
+                for (Map.Entry<String, Membership> membership : recentMemberships.entrySet()) {
+                    writeString(buffer, membership.getKey());
+                    buffer.putInt(membership.getValue().groups.size());
+                    for (String group : membership.getValue().groups) {
+                        buffer.putInt(groupIndexes.get(group));
+                    }
+                    buffer.putLong(membership.getValue().time);
+                }
+                buffer.force();
+            }
+            try {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        LOGGER.debug("Written {} LDAP group membership(s) to snapshot {}", recentMemberships.size(), path);
+    }
+
+    private static <V> Map<String, V> createLruMap(final int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private boolean isRecent(Membership membership) {
+        return System.currentTimeMillis() - membership.time <= maxAgeMillis;
+    }
+
+    private static long sizeOf(String value) {
+        return 4 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(MappedByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Membership {
+        private final Set<String> groups;
+        private final long time;
+
+        private Membership(Set<String> groups, long time) {
+            this.groups = groups;
+            this.time = time;
+        }
+
+        Set<String> getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return the time in milliseconds when the groups were retrieved.
+         */
+        long getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.seed.SeedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Provider;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-memory graph of the groups of the directory, used to resolve nested group memberships without additional LDAP calls.
+ * The groups are loaded one page at a time and the graph is replaced atomically on each successful refresh, a failed refresh
+ * keeping the previous one. The transitive closure of each group is computed on first use and memoized until the next refresh.
+ */
+class GroupGraph {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupGraph.class);
+    private final Provider<LDAPConnectionPool> ldapConnectionPool;
+    private final PagedSearcher pagedSearcher;
+    private final DefaultLdapMetrics ldapMetrics;
+    private final LdapConfig.GroupConfig groupConfig;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String, String>emptyMap(), Collections.<String, Set<String>>emptyMap());
+    private volatile boolean loaded;
+
+    GroupGraph(Provider<LDAPConnectionPool> ldapConnectionPool, PagedSearcher pagedSearcher, DefaultLdapMetrics ldapMetrics, LdapConfig.GroupConfig groupConfig) {
+        this.ldapConnectionPool = ldapConnectionPool;
+        this.pagedSearcher = pagedSearcher;
+        this.ldapMetrics = ldapMetrics;
+        this.groupConfig = groupConfig;
+    }
+
+    /**
+     * Reloads all the groups from the directory.
+     */
+    void refresh() {
+        String memberAttribute = groupConfig.getMemberAttribute();
+        Map<String, String> names = new HashMap<>();
+        Map<String, Set<String>> parents = new HashMap<>();
+        try (PagedSearchIterator<SearchResultEntry> entries = pagedSearcher.search(groupConfig.getBaseDN(), LdapUtils.objectClassFilter(groupConfig.getObjectClass()), "cn", memberAttribute)) {
+            while (entries.hasNext()) {
+                SearchResultEntry entry = entries.next();
+                String groupDn = LdapUtils.normalizeDn(entry.getDN());
+                names.put(groupDn, entry.getAttributeValue("cn"));
+                Iterator<String> members = getMembers(entry, memberAttribute);
+                while (members.hasNext()) {
+                    String memberDn = LdapUtils.normalizeDn(members.next());
+                    Set<String> memberParents = parents.get(memberDn);
+                    if (memberParents == null) {
+                        memberParents = new HashSet<>();
+                        parents.put(memberDn, memberParents);
+                    }
+                    memberParents.add(groupDn);
+                }
+            }
+        }
+        snapshot = new Snapshot(names, parents);
+        loaded = true;
+        LOGGER.debug("Loaded {} LDAP groups with {} distinct members", names.size(), parents.size());
+    }
+
+    /**
+     * @return true if the groups have been loaded at least once.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gives the groups of a member, either directly or through nested groups.
+     *
+     * @param memberDn the DN of the member.
+     * @return the CNs of the groups.
+     */
+    Set<String> getGroups(String memberDn) {
+        Snapshot current = snapshot;
+        Set<String> groups = new HashSet<>();
+        Set<String> directGroups = current.parents.get(LdapUtils.normalizeDn(memberDn));
+        if (directGroups != null) {
+            for (String groupDn : directGroups) {
+                for (String ancestorDn : current.getClosure(groupDn)) {
+                    groups.add(current.names.get(ancestorDn));
+                }
+            }
+        }
+        return groups;
+    }
+
+    private Iterator<String> getMembers(final SearchResultEntry entry, String memberAttribute) {
+        String[] members = entry.getAttributeValues(memberAttribute);
+        if (members != null || !isRanged(entry, memberAttribute)) {
+            return members == null ? Collections.<String>emptyIterator() : Arrays.asList(members).iterator();
+        }
+        // large groups only come with their first range of members, the next ones being read from the group entry
+        return new RangedAttributeIterator(
+                ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE),
+                memberAttribute,
+                requestedAttribute -> requestedAttribute.equals(memberAttribute) ? entry : getEntry(entry.getDN(), requestedAttribute)
+        );
+    }
+
+    private SearchResultEntry getEntry(String dn, String attribute) {
+        try {
+            return ldapConnectionPool.get().getEntry(dn, attribute);
+        } catch (LDAPException e) {
+            throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+        }
+    }
+
+    private static boolean isRanged(SearchResultEntry entry, String attribute) {
+        for (Attribute entryAttribute : entry.getAttributes()) {
+            if (entryAttribute.getBaseName().equalsIgnoreCase(attribute) && entryAttribute.hasOptions()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Snapshot {
+        private final Map<String, String> names;
+        private final Map<String, Set<String>> parents;
+        private final ConcurrentMap<String, Set<String>> closures = new ConcurrentHashMap<>();
+
+        private Snapshot(Map<String, String> names, Map<String, Set<String>> parents) {
+            this.names = names;
+            this.parents = parents;
+        }
+
+        private Set<String> getClosure(String groupDn) {
+            Set<String> closure = closures.get(groupDn);
+            if (closure == null) {
+                closure = computeClosure(groupDn);
+                closures.putIfAbsent(groupDn, closure);
+            }
+            return closure;
+        }
+
+        private Set<String> computeClosure(String groupDn) {
+            // breadth-first walk to the top-level groups, cycles in the membership graph are ignored
+            Set<String> closure = new HashSet<>();
+            Deque<String> toVisit = new ArrayDeque<>();
+            toVisit.add(groupDn);
+            while (!toVisit.isEmpty()) {
+                String current = toVisit.poll();
+                if (closure.add(current)) {
+                    Set<String> memoized = closures.get(current);
+                    if (memoized != null) {
+                        closure.addAll(memoized);
+                    } else {
+                        Set<String> currentParents = parents.get(current);
+                        if (currentParents != null) {
+                            toVisit.addAll(currentParents);
+                        }
+                    }
+                }
+            }
+            return Collections.unmodifiableSet(closure);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shrinks a connection pool back to its initial size when no connection has been checked out since the previous run.
+ * It is meant to be scheduled with the idle timeout as delay.
+ */
+class IdleConnectionEvictor implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+    private final LDAPConnectionPool pool;
+    private final int initialSize;
+    private long lastCheckouts = -1;
+
+    IdleConnectionEvictor(LDAPConnectionPool pool, int initialSize) {
+        this.pool = pool;
+        this.initialSize = initialSize;
+    }
+
+    @Override
+    public void run() {
+        if (pool.isClosed()) {
+            return;
+        }
+        LDAPConnectionPoolStatistics statistics = pool.getConnectionPoolStatistics();
+        long checkouts = statistics.getNumSuccessfulCheckouts() + statistics.getNumFailedCheckouts();
+        int available = pool.getCurrentAvailableConnections();
+        if (checkouts == lastCheckouts && available > initialSize) {
+            LOGGER.debug("Closing {} idle LDAP connection(s) of pool {}", available - initialSize, pool.getConnectionPoolName());
+            pool.shrinkPool(initialSize);
+        }
+        lastCheckouts = checkouts;
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.unboundid.ldap.sdk.BindRequest;
+import com.unboundid.ldap.sdk.FailoverServerSet;
+import com.unboundid.ldap.sdk.FewestConnectionsServerSet;
+import com.unboundid.ldap.sdk.GetEntryLDAPConnectionPoolHealthCheck;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RoundRobinServerSet;
+import com.unboundid.ldap.sdk.ServerSet;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+import com.unboundid.ldap.sdk.SingleServerSet;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.seed.SeedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates connections and connection pools to the configured LDAP servers, distributing them according to the
+ * configured load-balancing strategy.
+ */
+class LdapConnectionFactory {
+    private final LdapConfig ldapConfig;
+    private final List<String> hosts = new ArrayList<>();
+    private final List<Integer> ports = new ArrayList<>();
+    private final ServerSet serverSet;
+    private final BindRequest bindRequest;
+
+    LdapConnectionFactory(LdapConfig ldapConfig) {
+        this.ldapConfig = ldapConfig;
+        if (ldapConfig.getServers().isEmpty()) {
+            if (Strings.isNullOrEmpty(ldapConfig.getHost())) {
+                throw SeedException.createNew(LdapErrorCode.NO_SERVER);
+            }
+            hosts.add(ldapConfig.getHost());
+            ports.add(ldapConfig.getPort());
+        } else {
+            for (String server : ldapConfig.getServers()) {
+                parseServer(server);
+            }
+        }
+        this.serverSet = createServerSet();
+        if (Strings.isNullOrEmpty(ldapConfig.getBindDN())) {
+            this.bindRequest = null;
+        } else {
+            this.bindRequest = new SimpleBindRequest(ldapConfig.getBindDN(), ldapConfig.getBindPassword());
+        }
+    }
+
+    /**
+     * Creates a pool of connections bound with the configured service account.
+     *
+     * @param name    the name of the pool.
+     * @param maxSize the maximum number of connections kept in the pool.
+     * @return the connection pool.
+     * @throws LDAPException if the connections cannot be established or bound.
+     */
+    LDAPConnectionPool createPool(String name, int maxSize) throws LDAPException {
+        return configure(new LDAPConnectionPool(serverSet, bindRequest, getInitialSize(maxSize), maxSize), name);
+    }
+
+    /**
+     * Creates a pool of unauthenticated connections, meant to be used for user binds.
+     *
+     * @param name    the name of the pool.
+     * @param maxSize the maximum number of connections kept in the pool.
+     * @return the connection pool.
+     * @throws LDAPException if the connections cannot be established.
+     */
+    LDAPConnectionPool createAuthenticationPool(String name, int maxSize) throws LDAPException {
+        return configure(new LDAPConnectionPool(serverSet, null, getInitialSize(maxSize), maxSize), name);
+    }
+
+    /**
+     * @param maxSize the maximum number of connections kept in a pool.
+     * @return the number of connections created when the pool starts.
+     */
+    int getInitialSize(int maxSize) {
+        Integer initialSize = ldapConfig.pool().getInitialSize();
+        return initialSize == null ? maxSize : Math.min(initialSize, maxSize);
+    }
+
+    /**
+     * Creates a standalone connection bound with the configured service account, for operations that would hold a
+     * pooled connection for too long.
+     *
+     * @return the connection.
+     * @throws LDAPException if the connection cannot be established or bound.
+     */
+    LDAPConnection createConnection() throws LDAPException {
+        LDAPConnection connection = serverSet.getConnection();
+        if (bindRequest != null) {
+            try {
+                connection.bind(bindRequest.duplicate());
+            } catch (LDAPException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * @return the configured servers as a human readable string.
+     */
+    String describeServers() {
+        List<String> servers = new ArrayList<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            servers.add(hosts.get(i) + ":" + ports.get(i));
+        }
+        return Joiner.on(", ").join(servers);
+    }
+
+    private LDAPConnectionPool configure(LDAPConnectionPool pool, String name) {
+        LdapConfig.PoolConfig poolConfig = ldapConfig.pool();
+        pool.setConnectionPoolName(name);
+        pool.setCreateIfNecessary(poolConfig.isGrowOnDemand());
+        pool.setMaxWaitTimeMillis(poolConfig.getMaxWaitTime());
+        pool.setMaxConnectionAgeMillis(TimeUnit.SECONDS.toMillis(poolConfig.getMaxConnectionAge()));
+
+        LdapConfig.HealthCheckConfig healthCheckConfig = ldapConfig.healthCheck();
+        // the root DSE is requested in the background and after failures, so slow or dead servers get their connections replaced
+        pool.setHealthCheck(new GetEntryLDAPConnectionPoolHealthCheck(
+                "",
+                healthCheckConfig.getMaxResponseTime(),
+                false,
+                false,
+                false,
+                true,
+                true
+        ));
+        pool.setHealthCheckIntervalMillis(TimeUnit.SECONDS.toMillis(healthCheckConfig.getInterval()));
+        return pool;
+    }
+
+    private ServerSet createServerSet() {
+        String[] hostArray = hosts.toArray(new String[hosts.size()]);
+        int[] portArray = new int[ports.size()];
+        for (int i = 0; i < portArray.length; i++) {
+            portArray[i] = ports.get(i);
+        }
+        if (hostArray.length == 1) {
+            return new SingleServerSet(hostArray[0], portArray[0]);
+        }
+        switch (ldapConfig.getLoadBalancing()) {
+            case ROUND_ROBIN:
+                return new RoundRobinServerSet(hostArray, portArray);
+            case FEWEST_CONNECTIONS:
+                return new FewestConnectionsServerSet(hostArray, portArray);
+            default:
+                FailoverServerSet failoverServerSet = new FailoverServerSet(hostArray, portArray);
+                // connections established on a backup server are recycled so they go back to the preferred one when it recovers
+                failoverServerSet.setMaxFailoverConnectionAgeMillis(TimeUnit.SECONDS.toMillis(ldapConfig.healthCheck().getInterval()));
+                return failoverServerSet;
+        }
+    }
+
+    private void parseServer(String server) {
+        String host = server == null ? "" : server.trim();
+        int port = ldapConfig.getPort();
+        int separator = host.lastIndexOf(':');
+        if (separator > 0 && host.indexOf(':') == separator) {
+            try {
+                port = Integer.parseInt(host.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw SeedException.wrap(e, LdapErrorCode.INVALID_SERVER).put("server", server);
+            }
+            host = host.substring(0, separator);
+        }
+        if (host.isEmpty() || port < 0 || port > 65535) {
+            throw SeedException.createNew(LdapErrorCode.INVALID_SERVER).put("server", server);
+        }
+        hosts.add(host);
+        ports.add(port);
+    }
+}
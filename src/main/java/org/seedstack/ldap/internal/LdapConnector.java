@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
+import org.seedstack.seed.SeedException;
+
+import javax.inject.Provider;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the connection pools, which may be created after the application startup. Pools are obtained through this
+ * connector so that early calls wait for a bounded time or fail fast until the directory is reached.
+ */
+class LdapConnector implements Provider<LDAPConnectionPool> {
+    private final LdapConfig ldapConfig;
+    private final LdapConnectionFactory connectionFactory;
+    private final CountDownLatch connected = new CountDownLatch(1);
+    private volatile LDAPConnectionPool ldapConnectionPool;
+    private volatile LDAPConnectionPool authenticationConnectionPool;
+    private volatile LDAPException lastError;
+
+    LdapConnector(LdapConfig ldapConfig, LdapConnectionFactory connectionFactory) {
+        this.ldapConfig = ldapConfig;
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Creates the connection pools, with their initial connections.
+     *
+     * @throws LDAPException if the connections cannot be established.
+     */
+    synchronized void connect() throws LDAPException {
+        if (isConnected()) {
+            return;
+        }
+        LDAPConnectionPool pool = null;
+        try {
+            pool = connectionFactory.createPool(LdapMetrics.MAIN_POOL, ldapConfig.getConnectionNumber());
+            if (ldapConfig.getAuthenticationConnectionNumber() > 0) {
+                // connections of the authentication pool are only used for user binds, so they are never bound to the service account
+                authenticationConnectionPool = connectionFactory.createAuthenticationPool(LdapMetrics.AUTHENTICATION_POOL, ldapConfig.getAuthenticationConnectionNumber());
+            }
+        } catch (LDAPException e) {
+            if (pool != null) {
+                pool.close();
+            }
+            lastError = e;
+            throw e;
+        }
+        ldapConnectionPool = pool;
+        lastError = null;
+        connected.countDown();
+    }
+
+    boolean isConnected() {
+        return connected.getCount() == 0;
+    }
+
+    /**
+     * @return the last connection error, or null if the last attempt succeeded.
+     */
+    LDAPException getLastError() {
+        return lastError;
+    }
+
+    LdapConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * @return the main connection pool, waiting for it to be created if necessary.
+     */
+    @Override
+    public LDAPConnectionPool get() {
+        awaitConnection();
+        return ldapConnectionPool;
+    }
+
+    /**
+     * @return the pool used for user binds, which is the main pool when no dedicated pool is configured.
+     */
+    LDAPConnectionPool getAuthenticationPool() {
+        awaitConnection();
+        return authenticationConnectionPool != null ? authenticationConnectionPool : ldapConnectionPool;
+    }
+
+    /**
+     * @return the dedicated authentication pool without waiting, or null if it is not created (yet).
+     */
+    LDAPConnectionPool getDedicatedAuthenticationPool() {
+        return authenticationConnectionPool;
+    }
+
+    void close() {
+        if (authenticationConnectionPool != null) {
+            authenticationConnectionPool.close();
+        }
+        if (ldapConnectionPool != null) {
+            ldapConnectionPool.close();
+        }
+    }
+
+    private void awaitConnection() {
+        if (isConnected()) {
+            return;
+        }
+        try {
+            if (connected.await(ldapConfig.startup().getMaxWait(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the last error is not set as cause so that it is not mistaken for a failure of the current operation
+        LDAPException error = lastError;
+        throw SeedException.createNew(LdapErrorCode.DIRECTORY_UNAVAILABLE)
+                .put("servers", connectionFactory.describeServers())
+                .put("lastError", error == null ? "none" : error.getMessage());
+    }
+}
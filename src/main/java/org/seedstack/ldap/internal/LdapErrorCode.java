@@ -10,9 +10,25 @@ package org.seedstack.ldap.internal;
 import org.seedstack.shed.exception.ErrorCode;
 
 enum LdapErrorCode implements ErrorCode {
+    AMBIGUOUS_USER,
+    BULKHEAD_FULL,
+    CACHE_PROVIDER_ERROR,
+    CIRCUIT_OPEN,
     CONNECT_ERROR,
+    CREDENTIAL_HASH_ERROR,
+    DIRECTORY_UNAVAILABLE,
+    INVALID_BULKHEAD,
     INVALID_CREDENTIALS,
+    INVALID_FILTER,
+    INVALID_REPLICA,
+    INVALID_SERVER,
     LDAP_ERROR,
+    NO_SERVER,
+    NO_SNAPSHOT_PATH,
     UNKNOWN_BIND_DN,
+    UNKNOWN_CACHE,
+    UNKNOWN_GROUP,
+    UNKNOWN_OPERATION,
+    UNKNOWN_POOL,
     UNKNOWN_USER
 }
@@ -8,20 +8,78 @@
 package org.seedstack.ldap.internal;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import org.seedstack.ldap.AsyncLdapService;
+import org.seedstack.ldap.LdapCacheManager;
+import org.seedstack.ldap.LdapCacheProvider;
+import org.seedstack.ldap.LdapMetrics;
 import org.seedstack.ldap.LdapService;
 
+import javax.inject.Provider;
+import java.util.concurrent.ExecutorService;
+
 class LdapModule extends AbstractModule {
+    static final String AUTHENTICATION_POOL = "LdapAuthenticationPool";
+    static final String AUTHENTICATION_EXECUTOR = "LdapAuthenticationExecutor";
+    static final String ASYNC_EXECUTOR = "LdapAsyncExecutor";
 
-    private LDAPConnectionPool ldapConnectionPool;
+    private LdapConnector ldapConnector;
+    private ExecutorService authenticationExecutor;
+    private ExecutorService asyncExecutor;
+    private LdapCacheProvider ldapCacheProvider;
+    private DefaultLdapCacheManager ldapCacheManager;
+    private GroupGraph groupGraph;
+    private MemberOfResolver memberOfResolver;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private DirectoryReplica directoryReplica;
+    private DirectorySnapshot directorySnapshot;
+    private DefaultLdapMetrics ldapMetrics;
 
-    LdapModule(LDAPConnectionPool ldapConnectionPool) {
-        this.ldapConnectionPool = ldapConnectionPool;
+    LdapModule(LdapConnector ldapConnector, ExecutorService authenticationExecutor, ExecutorService asyncExecutor, LdapCacheProvider ldapCacheProvider, DefaultLdapCacheManager ldapCacheManager, GroupGraph groupGraph, MemberOfResolver memberOfResolver, CircuitBreaker circuitBreaker, Bulkhead bulkhead, DirectoryReplica directoryReplica, DirectorySnapshot directorySnapshot, DefaultLdapMetrics ldapMetrics) {
+        this.ldapConnector = ldapConnector;
+        this.authenticationExecutor = authenticationExecutor;
+        this.asyncExecutor = asyncExecutor;
+        this.ldapCacheProvider = ldapCacheProvider;
+        this.ldapCacheManager = ldapCacheManager;
+        this.groupGraph = groupGraph;
+        this.memberOfResolver = memberOfResolver;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.directoryReplica = directoryReplica;
+        this.directorySnapshot = directorySnapshot;
+        this.ldapMetrics = ldapMetrics;
     }
 
     @Override
     protected void configure() {
-        bind(LDAPConnectionPool.class).toInstance(ldapConnectionPool);
+        // pools may be created after the injector, so they are provided on each use
+        bind(LDAPConnectionPool.class).toProvider(ldapConnector);
+        // without a dedicated pool, user binds are done on the main pool and reverted to the service account afterwards
+        bind(LDAPConnectionPool.class).annotatedWith(Names.named(AUTHENTICATION_POOL)).toProvider(new Provider<LDAPConnectionPool>() {
+            @Override
+            public LDAPConnectionPool get() {
+                return ldapConnector.getAuthenticationPool();
+            }
+        });
+        bind(ExecutorService.class).annotatedWith(Names.named(AUTHENTICATION_EXECUTOR)).toInstance(authenticationExecutor);
+        bind(ExecutorService.class).annotatedWith(Names.named(ASYNC_EXECUTOR)).toInstance(asyncExecutor);
+        bind(LdapCacheProvider.class).toInstance(ldapCacheProvider);
+        bind(DefaultLdapCacheManager.class).toInstance(ldapCacheManager);
+        bind(LdapCacheManager.class).toInstance(ldapCacheManager);
+        bind(GroupGraph.class).toInstance(groupGraph);
+        bind(MemberOfResolver.class).toInstance(memberOfResolver);
+        bind(SearchCoalescer.class).toInstance(new SearchCoalescer());
+        bind(CircuitBreaker.class).toInstance(circuitBreaker);
+        bind(Bulkhead.class).toInstance(bulkhead);
+        bind(CredentialCache.class).toInstance(new CredentialCache(ldapCacheManager.getCredentialsCache()));
+        bind(RoleResolutionCache.class).toInstance(new RoleResolutionCache(ldapCacheManager.getRolesCache()));
+        bind(DirectoryReplica.class).toInstance(directoryReplica);
+        bind(DirectorySnapshot.class).toInstance(directorySnapshot);
+        bind(DefaultLdapMetrics.class).toInstance(ldapMetrics);
+        bind(LdapMetrics.class).toInstance(ldapMetrics);
         bind(LdapService.class).to(DefaultLdapService.class);
+        bind(AsyncLdapService.class).to(DefaultLdapService.class);
     }
 }
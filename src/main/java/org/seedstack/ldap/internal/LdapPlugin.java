@@ -7,19 +7,46 @@
  */
 package org.seedstack.ldap.internal;
 
-import com.unboundid.ldap.sdk.LDAPConnection;
-import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.ResultCode;
 import io.nuun.kernel.api.plugin.InitState;
 import io.nuun.kernel.api.plugin.context.InitContext;
+import org.seedstack.ldap.LdapCacheProvider;
 import org.seedstack.ldap.LdapConfig;
+import org.seedstack.ldap.LdapMetrics;
 import org.seedstack.seed.SeedException;
+import org.seedstack.seed.core.SeedRuntime;
 import org.seedstack.seed.core.internal.AbstractSeedPlugin;
+import org.seedstack.seed.diagnostic.spi.DiagnosticInfoCollector;
 import org.seedstack.seed.security.SecurityConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class LdapPlugin extends AbstractSeedPlugin {
-    private LDAPConnectionPool ldapConnectionPool;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LdapPlugin.class);
+    private LdapConnector ldapConnector;
+    private ExecutorService authenticationExecutor;
+    private ExecutorService asyncExecutor;
+    private ScheduledExecutorService backgroundExecutor;
+    private ScheduledExecutorService replicaExecutor;
+    private LdapCacheProvider ldapCacheProvider;
+    private DefaultLdapCacheManager ldapCacheManager;
+    private GroupGraph groupGraph;
+    private MemberOfResolver memberOfResolver;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private DirectoryReplica directoryReplica;
+    private DirectorySnapshot directorySnapshot;
+    private DefaultLdapMetrics ldapMetrics;
     private boolean startPlugin;
 
     @Override
@@ -27,59 +54,287 @@ public class LdapPlugin extends AbstractSeedPlugin {
         return "ldap";
     }
 
+    @Override
+    protected void setup(SeedRuntime seedRuntime) {
+        seedRuntime.getDiagnosticManager().registerDiagnosticInfoCollector("ldap", new DiagnosticInfoCollector() {
+            @Override
+            public Map<String, Object> collect() {
+                Map<String, Object> result = new HashMap<>();
+                result.put("enabled", startPlugin);
+                if (ldapConnector != null) {
+                    result.put("servers", ldapConnector.getConnectionFactory().describeServers());
+                    result.put("connected", ldapConnector.isConnected());
+                    if (ldapConnector.getLastError() != null) {
+                        result.put("lastError", ldapConnector.getLastError().getMessage());
+                    }
+                }
+                if (ldapCacheProvider != null) {
+                    result.put("cacheProvider", ldapCacheProvider.getClass().getName());
+                }
+                if (circuitBreaker != null) {
+                    result.put("circuitBreaker", circuitBreaker.getState());
+                }
+                if (bulkhead != null) {
+                    result.put("bulkhead", bulkhead.getInFlight());
+                }
+                return result;
+            }
+        });
+    }
+
     @Override
     public InitState initialize(InitContext initContext) {
 
         startPlugin = getConfiguration(SecurityConfig.class).getRealm(LdapRealm.class.getSimpleName()).isPresent();
         if (startPlugin) {
-            LdapConfig ldapConfig = getConfiguration(LdapConfig.class);
+            final LdapConfig ldapConfig = getConfiguration(LdapConfig.class);
+            ldapCacheProvider = createCacheProvider(ldapConfig);
+            ldapCacheManager = new DefaultLdapCacheManager(ldapConfig, ldapCacheProvider);
+            ldapMetrics = new DefaultLdapMetrics();
 
-            LDAPConnection connection;
-            try {
-                connection = new LDAPConnection(
-                        ldapConfig.getHost(),
-                        ldapConfig.getPort(),
-                        ldapConfig.getBindDN(),
-                        ldapConfig.getBindPassword()
-                );
-                ldapConnectionPool = new LDAPConnectionPool(connection, ldapConfig.getConnectionNumber());
-            } catch (LDAPException e) {
-                SeedException seedException;
-                switch (e.getResultCode().intValue()) {
-                    case ResultCode.NO_SUCH_OBJECT_INT_VALUE:
-                        seedException = SeedException.wrap(e, LdapErrorCode.UNKNOWN_BIND_DN);
-                        break;
-                    case ResultCode.INVALID_CREDENTIALS_INT_VALUE:
-                        seedException = SeedException.wrap(e, LdapErrorCode.INVALID_CREDENTIALS);
-                        break;
-                    case ResultCode.CONNECT_ERROR_INT_VALUE:
-                        seedException = SeedException.wrap(e, LdapErrorCode.CONNECT_ERROR);
-                        break;
-                    default:
-                        seedException = SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
-                        break;
+            LdapConnectionFactory connectionFactory = new LdapConnectionFactory(ldapConfig);
+            ldapConnector = new LdapConnector(ldapConfig, connectionFactory);
+            circuitBreaker = new CircuitBreaker(ldapConfig.circuitBreaker());
+            bulkhead = new Bulkhead(ldapConfig.bulkhead(), ldapConfig.getConnectionNumber(), getBackgroundExecutor());
+            PagedSearcher pagedSearcher = new PagedSearcher(ldapConnector, ldapMetrics, circuitBreaker, bulkhead, ldapConfig.getPageSize());
+            groupGraph = new GroupGraph(ldapConnector, pagedSearcher, ldapMetrics, ldapConfig.group());
+            memberOfResolver = new MemberOfResolver(ldapConfig.group());
+            directoryReplica = new DirectoryReplica(ldapConfig, ldapConnector, pagedSearcher, connectionFactory);
+            directorySnapshot = new DirectorySnapshot(ldapConfig.snapshot());
+            if (directorySnapshot.isEnabled()) {
+                startSnapshot(ldapConfig);
+            }
+
+            // asynchronous authentications can't run in parallel beyond the number of connections available for binds
+            authenticationExecutor = Executors.newFixedThreadPool(
+                    ldapConfig.getAuthenticationConnectionNumber() > 0 ? ldapConfig.getAuthenticationConnectionNumber() : ldapConfig.getConnectionNumber(),
+                    new ThreadFactoryBuilder().setNameFormat("ldap-authentication-%d").setDaemon(true).build()
+            );
+            // asynchronous search results are processed out of the connection reader threads, as caches may block
+            asyncExecutor = Executors.newFixedThreadPool(
+                    ldapConfig.getConnectionNumber(),
+                    new ThreadFactoryBuilder().setNameFormat("ldap-async-%d").setDaemon(true).build()
+            );
+
+            if (ldapConfig.startup().getMode() == LdapConfig.StartupMode.BACKGROUND) {
+                LOGGER.info("Connecting to LDAP directory {} in the background", connectionFactory.describeServers());
+                getBackgroundExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            ldapConnector.connect();
+                        } catch (LDAPException e) {
+                            LOGGER.warn("Unable to connect to LDAP directory, will retry in {} second(s)", ldapConfig.startup().getRetryInterval(), e);
+                            getBackgroundExecutor().schedule(this, ldapConfig.startup().getRetryInterval(), TimeUnit.SECONDS);
+                            return;
+                        }
+                        LOGGER.info("Connected to LDAP directory {}", ldapConnector.getConnectionFactory().describeServers());
+                        try {
+                            onConnected(ldapConfig);
+                        } catch (Exception e) {
+                            LOGGER.warn("Unable to load LDAP data after connection, it will be loaded on next refresh", e);
+                        }
+                    }
+                });
+            } else {
+                try {
+                    ldapConnector.connect();
+                } catch (LDAPException e) {
+                    throw wrapConnectionException(e, ldapConfig, connectionFactory);
                 }
-                seedException.put("host", ldapConfig.getHost())
-                        .put("port", ldapConfig.getPort())
-                        .put("dn", ldapConfig.getBindDN());
-                throw seedException;
+                onConnected(ldapConfig);
             }
         }
         return InitState.INITIALIZED;
     }
 
+    private void onConnected(LdapConfig ldapConfig) {
+        LdapConnectionFactory connectionFactory = ldapConnector.getConnectionFactory();
+        ldapMetrics.registerPool(LdapMetrics.MAIN_POOL, ldapConnector.get());
+        if (ldapConnector.getDedicatedAuthenticationPool() != null) {
+            ldapMetrics.registerPool(LdapMetrics.AUTHENTICATION_POOL, ldapConnector.getDedicatedAuthenticationPool());
+        }
+
+        int idleTimeout = ldapConfig.pool().getIdleTimeout();
+        if (idleTimeout > 0) {
+            getBackgroundExecutor().scheduleWithFixedDelay(
+                    new IdleConnectionEvictor(ldapConnector.get(), connectionFactory.getInitialSize(ldapConfig.getConnectionNumber())),
+                    idleTimeout,
+                    idleTimeout,
+                    TimeUnit.SECONDS
+            );
+            if (ldapConnector.getDedicatedAuthenticationPool() != null) {
+                getBackgroundExecutor().scheduleWithFixedDelay(
+                        new IdleConnectionEvictor(ldapConnector.getDedicatedAuthenticationPool(), connectionFactory.getInitialSize(ldapConfig.getAuthenticationConnectionNumber())),
+                        idleTimeout,
+                        idleTimeout,
+                        TimeUnit.SECONDS
+                );
+            }
+        }
+
+        try {
+            memberOfResolver.detect(ldapConnector.get());
+        } catch (LDAPException e) {
+            LOGGER.warn("Unable to detect LDAP memberOf support, group memberships will be searched", e);
+        }
+
+        LdapConfig.NestedGroupsConfig nestedGroupsConfig = ldapConfig.group().nested();
+        if (nestedGroupsConfig.isEnabled()) {
+            getBackgroundExecutor().scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                groupGraph.refresh();
+                            } catch (Exception e) {
+                                LOGGER.warn("Unable to refresh LDAP groups, keeping previously loaded groups", e);
+                            }
+                        }
+                    },
+                    nestedGroupsConfig.getRefreshInterval(),
+                    nestedGroupsConfig.getRefreshInterval(),
+                    TimeUnit.SECONDS
+            );
+            try {
+                groupGraph.refresh();
+            } catch (Exception e) {
+                LOGGER.warn("Unable to load LDAP groups, only direct group memberships will be resolved until the next refresh", e);
+            }
+        }
+
+        LdapConfig.ReplicaConfig replicaConfig = ldapConfig.replica();
+        if (replicaConfig.isEnabled()) {
+            // full reloads can be long, so they must not delay the other background tasks
+            replicaExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ldap-replica-%d").setDaemon(true).build()
+            );
+            replicaExecutor.scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                directoryReplica.synchronize();
+                            } catch (Exception e) {
+                                LOGGER.warn("Unable to synchronize the LDAP replica", e);
+                            }
+                        }
+                    },
+                    replicaConfig.getPollingInterval(),
+                    replicaConfig.getPollingInterval(),
+                    TimeUnit.SECONDS
+            );
+            directoryReplica.start();
+        }
+    }
+
+    private LdapCacheProvider createCacheProvider(LdapConfig ldapConfig) {
+        Class<? extends LdapCacheProvider> cacheProviderClass = ldapConfig.getCacheProvider();
+        if (cacheProviderClass == null) {
+            return new LocalLdapCacheProvider();
+        }
+        try {
+            return cacheProviderClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            throw SeedException.wrap(e, LdapErrorCode.CACHE_PROVIDER_ERROR)
+                    .put("cacheProvider", cacheProviderClass.getName());
+        }
+    }
+
+    private void startSnapshot(LdapConfig ldapConfig) {
+        // memberships of the snapshot are available before the connection is established, even if it fails
+        long groupCacheTtlMillis = TimeUnit.SECONDS.toMillis(ldapConfig.group().cache().getTtl());
+        for (Map.Entry<String, DirectorySnapshot.Membership> membership : directorySnapshot.load().entrySet()) {
+            if (groupCacheTtlMillis <= 0) {
+                ldapCacheManager.getUserGroupsCache().put(membership.getKey(), membership.getValue().getGroups());
+            } else {
+                // memberships expire from the cache as if they had been cached when retrieved
+                long remainingTtlMillis = membership.getValue().getTime() + groupCacheTtlMillis - System.currentTimeMillis();
+                if (remainingTtlMillis > 0) {
+                    ldapCacheManager.getUserGroupsCache().put(membership.getKey(), membership.getValue().getGroups(), remainingTtlMillis);
+                }
+            }
+        }
+        getBackgroundExecutor().scheduleWithFixedDelay(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        writeSnapshot();
+                    }
+                },
+                ldapConfig.snapshot().getWriteInterval(),
+                ldapConfig.snapshot().getWriteInterval(),
+                TimeUnit.SECONDS
+        );
+    }
+
+    private void writeSnapshot() {
+        try {
+            directorySnapshot.write();
+        } catch (Exception e) {
+            LOGGER.warn("Unable to write the LDAP snapshot", e);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ldap-background-%d").setDaemon(true).build()
+            );
+        }
+        return backgroundExecutor;
+    }
+
+    private SeedException wrapConnectionException(LDAPException e, LdapConfig ldapConfig, LdapConnectionFactory connectionFactory) {
+        SeedException seedException;
+        switch (e.getResultCode().intValue()) {
+            case ResultCode.NO_SUCH_OBJECT_INT_VALUE:
+                seedException = SeedException.wrap(e, LdapErrorCode.UNKNOWN_BIND_DN);
+                break;
+            case ResultCode.INVALID_CREDENTIALS_INT_VALUE:
+                seedException = SeedException.wrap(e, LdapErrorCode.INVALID_CREDENTIALS);
+                break;
+            case ResultCode.CONNECT_ERROR_INT_VALUE:
+                seedException = SeedException.wrap(e, LdapErrorCode.CONNECT_ERROR);
+                break;
+            default:
+                seedException = SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+                break;
+        }
+        return seedException.put("servers", connectionFactory.describeServers())
+                .put("dn", ldapConfig.getBindDN());
+    }
+
     @Override
     public Object nativeUnitModule() {
         if (startPlugin) {
-            return new LdapModule(ldapConnectionPool);
+            return new LdapModule(ldapConnector, authenticationExecutor, asyncExecutor, ldapCacheProvider, ldapCacheManager, groupGraph, memberOfResolver, circuitBreaker, bulkhead, directoryReplica, directorySnapshot, ldapMetrics);
         }
         return null;
     }
 
     @Override
     public void stop() {
-        if (ldapConnectionPool != null) {
-            ldapConnectionPool.close();
+        if (directoryReplica != null) {
+            directoryReplica.stop();
+        }
+        if (replicaExecutor != null) {
+            replicaExecutor.shutdownNow();
+        }
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        if (directorySnapshot != null && directorySnapshot.isEnabled()) {
+            writeSnapshot();
+        }
+        if (authenticationExecutor != null) {
+            authenticationExecutor.shutdown();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        if (ldapConnector != null) {
+            ldapConnector.close();
         }
     }
 }
@@ -39,18 +39,34 @@ class LdapRealm implements Realm {
     @Inject
     private LdapService ldapService;
 
+    @Inject
+    private CredentialCache credentialCache;
+
+    @Inject
+    private RoleResolutionCache roleResolutionCache;
+
+    private final RoleMapping memoizedRoleMapping = (groups, otherPrincipals) -> roleResolutionCache.resolveRoles(groups, otherPrincipals);
+
+    private final RolePermissionResolver memoizedRolePermissionResolver = role -> roleResolutionCache.resolvePermissions(role);
+
     @Override
     public Set<String> getRealmRoles(PrincipalProvider<?> identityPrincipal, Collection<PrincipalProvider<?>> otherPrincipals) {
         SimplePrincipalProvider dnPrincipalProvider = Principals.getSimplePrincipalByName(otherPrincipals, "dn");
+        PrincipalProvider<LdapUserContext> userContextPrincipalProvider = Principals.getOnePrincipalByType(otherPrincipals, LdapUserContext.class);
         try {
             LdapUserContext userContext;
-            if (dnPrincipalProvider != null) {
+            if (userContextPrincipalProvider != null) {
+                // the context of the login already holds the attributes retrieved with the user
+                userContext = userContextPrincipalProvider.getPrincipal();
+            } else if (dnPrincipalProvider != null) {
                 userContext = ldapService.createUserContext(dnPrincipalProvider.getValue());
             } else {
                 String identity = identityPrincipal.getPrincipal().toString();
                 userContext = ldapService.findUser(identity);
             }
-            return ldapService.retrieveUserGroups(userContext);
+            Set<String> groups = ldapService.retrieveUserGroups(userContext);
+            // the interned set lets the memoized role mapping find the roles of the groups with a single lookup
+            return roleResolutionCache.isEnabled() ? roleResolutionCache.intern(groups) : groups;
         } catch (Exception e) {
             throw new AuthenticationException("Unable to retrieve roles from LDAP realm", e);
         }
@@ -63,8 +79,19 @@ class LdapRealm implements Realm {
         }
         UsernamePasswordToken userNamePasswordToken = (UsernamePasswordToken) token;
         try {
-            LdapUserContext userContext = ldapService.findUser(userNamePasswordToken.getUsername());
-            ldapService.authenticate(userContext, new String(userNamePasswordToken.getPassword()));
+            LdapUserContext userContext = credentialCache.isEnabled() ? credentialCache.verify(userNamePasswordToken.getUsername(), userNamePasswordToken.getPassword()) : null;
+            if (userContext == null) {
+                userContext = ldapService.findUser(userNamePasswordToken.getUsername(), LdapService.LOGIN_PROFILE);
+                try {
+                    ldapService.authenticate(userContext, new String(userNamePasswordToken.getPassword()));
+                } catch (RuntimeException e) {
+                    credentialCache.invalidate(userNamePasswordToken.getUsername());
+                    throw e;
+                }
+                if (credentialCache.isEnabled()) {
+                    credentialCache.put(userNamePasswordToken.getUsername(), (DefaultLdapUserContext) userContext, userNamePasswordToken.getPassword());
+                }
+            }
 
             AuthenticationInfo authenticationInfo = new AuthenticationInfo(userNamePasswordToken.getUsername(), userNamePasswordToken.getPassword());
             authenticationInfo.getOtherPrincipals().add(new SimplePrincipalProvider("dn", userContext.getDn()));
@@ -87,12 +114,12 @@ class LdapRealm implements Realm {
 
     @Override
     public RoleMapping getRoleMapping() {
-        return this.roleMapping;
+        return roleResolutionCache.isEnabled() ? memoizedRoleMapping : this.roleMapping;
     }
 
     @Override
     public RolePermissionResolver getRolePermissionResolver() {
-        return this.rolePermissionResolver;
+        return roleResolutionCache.isEnabled() ? memoizedRolePermissionResolver : this.rolePermissionResolver;
     }
 
     /**
@@ -103,6 +130,8 @@ class LdapRealm implements Realm {
     @Inject
     public void setRoleMapping(@Named("LdapRealm-role-mapping") RoleMapping roleMapping) {
         this.roleMapping = roleMapping;
+        // fields are injected before methods, so the cache is already there
+        roleResolutionCache.setMappings(this.roleMapping, this.rolePermissionResolver);
     }
 
     /**
@@ -113,6 +142,7 @@ class LdapRealm implements Realm {
     @Inject
     public void setRolePermissionResolver(@Named("LdapRealm-role-permission-resolver") RolePermissionResolver rolePermissionResolver) {
         this.rolePermissionResolver = rolePermissionResolver;
+        roleResolutionCache.setMappings(this.roleMapping, this.rolePermissionResolver);
     }
 
     @Override
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.google.common.base.Strings;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.seedstack.seed.SeedException;
+
+final class LdapUtils {
+    private LdapUtils() {
+        // no instantiation allowed
+    }
+
+    /**
+     * Creates a filter matching entries of the specified object class, or any entry if no object class is specified.
+     *
+     * @param objectClass the object class, can be null.
+     * @return the filter.
+     */
+    static Filter objectClassFilter(String objectClass) {
+        if (Strings.isNullOrEmpty(objectClass)) {
+            return Filter.createPresenceFilter("objectclass");
+        } else {
+            return Filter.createEqualityFilter("objectclass", objectClass);
+        }
+    }
+
+    /**
+     * Normalizes a DN so that equivalent DNs differing only by case or spacing are equal.
+     *
+     * @param dn the DN to normalize.
+     * @return the normalized DN, or the lower-cased DN if it cannot be parsed.
+     */
+    static String normalizeDn(String dn) {
+        try {
+            return new DN(dn).toNormalizedString();
+        } catch (LDAPException e) {
+            return dn.toLowerCase();
+        }
+    }
+
+    /**
+     * Checks if an error is caused by the lack of a usable directory (unreachable, overloaded or not responding in time), as
+     * opposed to errors returned by a working directory like an unknown entry or invalid credentials.
+     *
+     * @param throwable the error.
+     * @return true if the directory failed.
+     */
+    static boolean isDirectoryFailure(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof LDAPException) {
+                ResultCode resultCode = ((LDAPException) cause).getResultCode();
+                return !ResultCode.isConnectionUsable(resultCode)
+                        || ResultCode.TIMEOUT.equals(resultCode)
+                        || ResultCode.TIME_LIMIT_EXCEEDED.equals(resultCode)
+                        || ResultCode.BUSY.equals(resultCode)
+                        || ResultCode.UNAVAILABLE.equals(resultCode);
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an error means that the directory cannot be used at the moment, because it failed, because the connection is not
+     * established yet or because calls are suspended by the circuit breaker.
+     *
+     * @param throwable the error.
+     * @return true if the directory is unavailable.
+     */
+    static boolean isDirectoryUnavailable(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof SeedException
+                    && (((SeedException) cause).getErrorCode() == LdapErrorCode.CIRCUIT_OPEN || ((SeedException) cause).getErrorCode() == LdapErrorCode.DIRECTORY_UNAVAILABLE)) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return isDirectoryFailure(throwable);
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.ldap.LdapCache;
+import org.seedstack.ldap.LdapConfig;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded in-process cache with a time-to-live and an LRU or LFU eviction policy. All operations are done in constant time.
+ *
+ * @param <V> the type of cached values
+ */
+class LocalLdapCache<V> implements LdapCache<V> {
+    private final String name;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LdapConfig.EvictionPolicy evictionPolicy;
+    private final LinkedHashMap<String, CacheEntry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, LinkedHashSet<String>> frequencies = new HashMap<>();
+    private int minFrequency;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    LocalLdapCache(String name, LdapConfig.CacheConfig cacheConfig) {
+        this.name = name;
+        this.enabled = cacheConfig.isEnabled();
+        this.ttlNanos = cacheConfig.getTtl() * 1000000000L;
+        this.maxSize = cacheConfig.getMaxSize();
+        this.evictionPolicy = cacheConfig.getEviction();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized V get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        if (entry.expiring && entry.isExpired(System.nanoTime())) {
+            remove(key);
+            evictionCount++;
+            missCount++;
+            return null;
+        }
+        if (evictionPolicy == LdapConfig.EvictionPolicy.LFU) {
+            touch(key, entry);
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(String key, V value) {
+        put(key, value, ttlNanos, ttlNanos > 0);
+    }
+
+    @Override
+    public synchronized void put(String key, V value, long ttlMillis) {
+        put(key, value, TimeUnit.MILLISECONDS.toNanos(ttlMillis), true);
+    }
+
+    private void put(String key, V value, long entryTtlNanos, boolean expiring) {
+        if (!enabled) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + entryTtlNanos;
+        CacheEntry<V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            entry.expiresAt = expiresAt;
+            entry.expiring = expiring;
+            if (evictionPolicy == LdapConfig.EvictionPolicy.LFU) {
+                touch(key, entry);
+            }
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(key, new CacheEntry<>(value, expiresAt, expiring));
+        if (evictionPolicy == LdapConfig.EvictionPolicy.LFU) {
+            bucket(1).add(key);
+            minFrequency = 1;
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String key) {
+        remove(key);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+        frequencies.clear();
+        minFrequency = 0;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    private void evict() {
+        String victim;
+        if (evictionPolicy == LdapConfig.EvictionPolicy.LFU) {
+            LinkedHashSet<String> keys = frequencies.get(minFrequency);
+            if (keys == null || keys.isEmpty()) {
+                // the minimum frequency is stale after a removal, recompute it
+                minFrequency = Integer.MAX_VALUE;
+                for (Map.Entry<Integer, LinkedHashSet<String>> bucket : frequencies.entrySet()) {
+                    if (!bucket.getValue().isEmpty() && bucket.getKey() < minFrequency) {
+                        minFrequency = bucket.getKey();
+                    }
+                }
+                keys = frequencies.get(minFrequency);
+            }
+            victim = keys.iterator().next();
+        } else {
+            victim = entries.keySet().iterator().next();
+        }
+        remove(victim);
+        evictionCount++;
+    }
+
+    private void touch(String key, CacheEntry<V> entry) {
+        LinkedHashSet<String> keys = frequencies.get(entry.frequency);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            frequencies.remove(entry.frequency);
+            if (minFrequency == entry.frequency) {
+                minFrequency++;
+            }
+        }
+        entry.frequency++;
+        bucket(entry.frequency).add(key);
+    }
+
+    private void remove(String key) {
+        CacheEntry<V> entry = entries.remove(key);
+        if (entry != null && evictionPolicy == LdapConfig.EvictionPolicy.LFU) {
+            LinkedHashSet<String> keys = frequencies.get(entry.frequency);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                frequencies.remove(entry.frequency);
+            }
+        }
+    }
+
+    private LinkedHashSet<String> bucket(int frequency) {
+        LinkedHashSet<String> keys = frequencies.get(frequency);
+        if (keys == null) {
+            keys = new LinkedHashSet<>();
+            frequencies.put(frequency, keys);
+        }
+        return keys;
+    }
+
+    private static class CacheEntry<V> {
+        private V value;
+        private long expiresAt;
+        private boolean expiring;
+        private int frequency = 1;
+
+        private CacheEntry(V value, long expiresAt, boolean expiring) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.expiring = expiring;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.ldap.LdapCache;
+import org.seedstack.ldap.LdapCacheProvider;
+import org.seedstack.ldap.LdapConfig;
+
+/**
+ * Creates bounded caches held in the memory of the application instance.
+ */
+class LocalLdapCacheProvider implements LdapCacheProvider {
+    @Override
+    public <V> LdapCache<V> createCache(String name, LdapConfig.CacheConfig cacheConfig) {
+        return new LocalLdapCache<>(name, cacheConfig);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RDN;
+import com.unboundid.ldap.sdk.RootDSE;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.schema.AttributeTypeDefinition;
+import com.unboundid.ldap.sdk.schema.Schema;
+import org.seedstack.ldap.LdapConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Resolves the groups of a user from the memberOf-style attribute of its entry, so they come with the user search instead of
+ * requiring a group search. In automatic mode, the support of this attribute is detected from the capabilities advertised in the
+ * root DSE (Active Directory) or from its definition as an operational attribute in the schema (OpenLDAP memberof overlay).
+ */
+class MemberOfResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberOfResolver.class);
+    private static final String ACTIVE_DIRECTORY_CAPABILITY = "1.2.840.113556.1.4.800";
+    private static final String SUPPORTED_CAPABILITIES = "supportedCapabilities";
+    private final LdapConfig.GroupConfig groupConfig;
+    private volatile boolean enabled;
+
+    MemberOfResolver(LdapConfig.GroupConfig groupConfig) {
+        this.groupConfig = groupConfig;
+        this.enabled = groupConfig.getMembershipResolution() == LdapConfig.MembershipResolution.MEMBER_OF;
+    }
+
+    /**
+     * Detects if the directory maintains the memberOf attribute, when the membership resolution is automatic.
+     *
+     * @param ldapConnectionPool the pool to get a connection from.
+     * @throws LDAPException if the root DSE or the schema cannot be read.
+     */
+    void detect(LDAPConnectionPool ldapConnectionPool) throws LDAPException {
+        if (groupConfig.getMembershipResolution() != LdapConfig.MembershipResolution.AUTO) {
+            return;
+        }
+        LDAPConnection connection = ldapConnectionPool.getConnection();
+        try {
+            RootDSE rootDSE = connection.getRootDSE();
+            if (rootDSE != null && rootDSE.hasAttributeValue(SUPPORTED_CAPABILITIES, ACTIVE_DIRECTORY_CAPABILITY)) {
+                enabled = true;
+            } else {
+                // a plain user attribute of the same name may exist in the schema without being maintained by the server
+                Schema schema = connection.getSchema();
+                AttributeTypeDefinition attributeType = schema == null ? null : schema.getAttributeType(groupConfig.getMemberOfAttribute());
+                enabled = attributeType != null && attributeType.isOperational();
+            }
+            ldapConnectionPool.releaseConnection(connection);
+        } catch (LDAPException e) {
+            ldapConnectionPool.releaseDefunctConnection(connection);
+            throw e;
+        }
+        LOGGER.info("LDAP group memberships are resolved by {}", enabled ? "reading the " + groupConfig.getMemberOfAttribute() + " attribute of users" : "searching groups");
+    }
+
+    /**
+     * @return true if the groups of users are read from their memberOf attribute.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the name of the memberOf attribute.
+     */
+    String getAttribute() {
+        return groupConfig.getMemberOfAttribute();
+    }
+
+    /**
+     * Extracts the names of the groups of a user from its entry. Only the groups located under the configured group base DN are
+     * retained and their name is the cn of their DN.
+     *
+     * @param entry the entry of the user, retrieved with the memberOf attribute.
+     * @return the names of the groups.
+     */
+    Set<String> getGroups(SearchResultEntry entry) {
+        Set<String> groups = new HashSet<>();
+        String[] groupDns = entry == null ? null : entry.getAttributeValues(getAttribute());
+        if (groupDns == null) {
+            return groups;
+        }
+        for (String groupDn : groupDns) {
+            try {
+                DN dn = new DN(groupDn);
+                if (dn.isDescendantOf(groupConfig.getBaseDN(), false)) {
+                    String name = getCommonName(dn.getRDN());
+                    if (name != null) {
+                        groups.add(name);
+                    }
+                }
+            } catch (LDAPException e) {
+                LOGGER.debug("Ignoring invalid group DN {}", groupDn, e);
+            }
+        }
+        return groups;
+    }
+
+    private String getCommonName(RDN rdn) {
+        String[] names = rdn.getAttributeNames();
+        for (int i = 0; i < names.length; i++) {
+            if ("cn".equalsIgnoreCase(names[i])) {
+                return rdn.getAttributeValues()[i];
+            }
+        }
+        return null;
+    }
+}
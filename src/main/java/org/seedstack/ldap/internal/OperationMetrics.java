@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import org.seedstack.ldap.LdapOperationStatistics;
+import org.seedstack.seed.SeedException;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free metrics of an LDAP operation. Latencies are recorded in a histogram of power-of-two microsecond buckets.
+ */
+class OperationMetrics implements LdapOperationStatistics {
+    private static final int BUCKET_COUNT = 32;
+    private static final String OTHER_ERROR = "other";
+    private static final String CIRCUIT_OPEN_ERROR = "circuit open";
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder entryCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts measuring an invocation.
+     *
+     * @return the sample to complete when the invocation ends.
+     */
+    Sample start() {
+        return new Sample(System.nanoTime());
+    }
+
+    /**
+     * Starts measuring an invocation that began earlier.
+     *
+     * @param startNanos the {@link System#nanoTime()} at the beginning of the invocation.
+     * @return the sample to complete when the invocation ends.
+     */
+    Sample start(long startNanos) {
+        return new Sample(startNanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        long errors = 0;
+        for (LongAdder errorCount : errorCounts.values()) {
+            errors += errorCount.sum();
+        }
+        return errors;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> errorCount : errorCounts.entrySet()) {
+            result.put(errorCount.getKey(), errorCount.getValue().sum());
+        }
+        return result;
+    }
+
+    @Override
+    public long getEntryCount() {
+        return entryCount.sum();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        long invocations = count.sum();
+        return invocations == 0 ? 0 : toMillis(totalNanos.sum()) / invocations;
+    }
+
+    @Override
+    public double getMaxLatency() {
+        return toMillis(maxNanos.get());
+    }
+
+    @Override
+    public double getLatencyPercentile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * Math.max(0, Math.min(1, quantile)));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulated += buckets.get(i);
+            if (cumulated >= threshold && cumulated > 0) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    @Override
+    public SortedMap<Double, Long> getLatencyHistogram() {
+        SortedMap<Double, Long> histogram = new TreeMap<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = buckets.get(i);
+            if (bucketCount > 0) {
+                histogram.put(getBucketUpperBound(i), bucketCount);
+            }
+        }
+        return histogram;
+    }
+
+    void reset() {
+        count.reset();
+        entryCount.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        errorCounts.clear();
+    }
+
+    private void record(long elapsedNanos, int entries, String error) {
+        count.increment();
+        entryCount.add(entries);
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        buckets.incrementAndGet(getBucketIndex(elapsedNanos));
+        if (error != null) {
+            errorCounts.computeIfAbsent(error, key -> new LongAdder()).increment();
+        }
+    }
+
+    private static int getBucketIndex(long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    private static double getBucketUpperBound(int index) {
+        return (1L << index) / 1000d;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000d;
+    }
+
+    private static String getErrorName(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause != null) {
+            if (cause instanceof LDAPException) {
+                return ((LDAPException) cause).getResultCode().getName();
+            }
+            if (cause instanceof SeedException && ((SeedException) cause).getErrorCode() == LdapErrorCode.UNKNOWN_USER) {
+                return ResultCode.NO_SUCH_OBJECT.getName();
+            }
+            if (cause instanceof SeedException && ((SeedException) cause).getErrorCode() == LdapErrorCode.CIRCUIT_OPEN) {
+                return CIRCUIT_OPEN_ERROR;
+            }
+            cause = cause.getCause();
+        }
+        return OTHER_ERROR;
+    }
+
+    /**
+     * The measure of a single invocation.
+     */
+    class Sample {
+        private final long startNanos;
+        private int entries;
+
+        private Sample(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void addEntries(int entryCount) {
+            this.entries += entryCount;
+        }
+
+        void success() {
+            record(System.nanoTime() - startNanos, entries, null);
+        }
+
+        void failure(Throwable throwable) {
+            record(System.nanoTime() - startNanos, entries, getErrorName(throwable));
+        }
+
+        void complete(Throwable throwable) {
+            if (throwable == null) {
+                success();
+            } else {
+                failure(throwable);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import org.seedstack.seed.SeedException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the entries of a search one page at a time with the simple paged results control, so that only one page is held
+ * in memory and server size limits don't apply. As the paging state is tied to the connection on most servers, a connection is
+ * held from the first page until the iteration is complete or closed.
+ *
+ * @param <T> the type of the elements built from the entries.
+ */
+class PagedSearchIterator<T> implements Iterator<T>, AutoCloseable {
+    private final LDAPConnectionPool ldapConnectionPool;
+    private final OperationMetrics operationMetrics;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final SearchRequest searchRequest;
+    private final int pageSize;
+    private final Function<SearchResultEntry, T> mapper;
+    private final Deque<SearchResultEntry> page = new ArrayDeque<>();
+    private LDAPConnection connection;
+    private boolean admitted;
+    private ASN1OctetString cookie;
+    private boolean complete;
+
+    PagedSearchIterator(LDAPConnectionPool ldapConnectionPool, OperationMetrics operationMetrics, CircuitBreaker circuitBreaker, Bulkhead bulkhead, SearchRequest searchRequest, int pageSize, Function<SearchResultEntry, T> mapper) {
+        this.ldapConnectionPool = ldapConnectionPool;
+        this.operationMetrics = operationMetrics;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return a sequential stream of the elements, releasing the connection when closed.
+     */
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (page.isEmpty() && !complete) {
+            fetchNextPage();
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return mapper.apply(page.removeFirst());
+    }
+
+    @Override
+    public void close() {
+        page.clear();
+        if (connection != null && !complete) {
+            // a page size of zero tells the server to discard the paging state of the search
+            try {
+                connection.search(createRequest(0));
+                releaseConnection(false);
+            } catch (LDAPException e) {
+                releaseConnection(true);
+            }
+        } else {
+            releaseConnection(false);
+        }
+        complete = true;
+    }
+
+    private void fetchNextPage() {
+        OperationMetrics.Sample sample = operationMetrics.start();
+        try {
+            if (!admitted) {
+                // the connection is held by the compartment of the search until the iteration is complete
+                bulkhead.acquire(operationMetrics.getName());
+                admitted = true;
+            }
+            SearchResult searchResult = circuitBreaker.call(operationMetrics.getName(), () -> {
+                if (connection == null) {
+                    connection = ldapConnectionPool.getConnection();
+                }
+                return connection.search(createRequest(pageSize));
+            });
+            sample.addEntries(searchResult.getEntryCount());
+            page.addAll(searchResult.getSearchEntries());
+            SimplePagedResultsControl responseControl = SimplePagedResultsControl.get(searchResult);
+            // servers ignoring the control return all the entries at once
+            cookie = responseControl == null ? null : responseControl.getCookie();
+            if (cookie == null || cookie.getValueLength() == 0) {
+                complete = true;
+                releaseConnection(false);
+            }
+            sample.success();
+        } catch (LDAPException e) {
+            sample.failure(e);
+            abort();
+            throw SeedException.wrap(e, LdapErrorCode.LDAP_ERROR);
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            abort();
+            throw e;
+        }
+    }
+
+    private void abort() {
+        releaseConnection(true);
+        complete = true;
+    }
+
+    private void releaseConnection(boolean defunct) {
+        if (connection != null) {
+            if (defunct) {
+                ldapConnectionPool.releaseDefunctConnection(connection);
+            } else {
+                ldapConnectionPool.releaseConnection(connection);
+            }
+            connection = null;
+        }
+        if (admitted) {
+            bulkhead.release(operationMetrics.getName());
+            admitted = false;
+        }
+    }
+
+    private SearchRequest createRequest(int size) {
+        SearchRequest pageRequest = searchRequest.duplicate();
+        pageRequest.addControl(new SimplePagedResultsControl(size, cookie, false));
+        return pageRequest;
+    }
+}
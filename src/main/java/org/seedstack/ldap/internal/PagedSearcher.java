@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+import org.seedstack.ldap.LdapMetrics;
+
+import javax.inject.Provider;
+import java.util.function.Function;
+
+/**
+ * Runs the subtree searches of background loads one page at a time. Pages are measured as {@link LdapMetrics#SEARCH_PAGE}
+ * operations and go through the circuit breaker and the bulkhead like streamed searches.
+ */
+class PagedSearcher {
+    private final Provider<LDAPConnectionPool> ldapConnectionPool;
+    private final DefaultLdapMetrics ldapMetrics;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final int pageSize;
+
+    PagedSearcher(Provider<LDAPConnectionPool> ldapConnectionPool, DefaultLdapMetrics ldapMetrics, CircuitBreaker circuitBreaker, Bulkhead bulkhead, int pageSize) {
+        this.ldapConnectionPool = ldapConnectionPool;
+        this.ldapMetrics = ldapMetrics;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param baseDN     the base DN of the subtree.
+     * @param filter     the filter of the search.
+     * @param attributes the attributes to retrieve.
+     * @return the iterator over the entries, to close once done.
+     */
+    PagedSearchIterator<SearchResultEntry> search(String baseDN, Filter filter, String... attributes) {
+        return search(new SearchRequest(baseDN, SearchScope.SUB, filter, attributes), Function.identity());
+    }
+
+    <T> PagedSearchIterator<T> search(SearchRequest searchRequest, Function<SearchResultEntry, T> mapper) {
+        return new PagedSearchIterator<>(
+                ldapConnectionPool.get(),
+                ldapMetrics.getOperationMetrics(LdapMetrics.SEARCH_PAGE),
+                circuitBreaker,
+                bulkhead,
+                searchRequest,
+                pageSize,
+                mapper
+        );
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolHealthCheck;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolStatistics;
+import com.unboundid.ldap.sdk.LDAPException;
+import org.seedstack.ldap.LdapOperationStatistics;
+import org.seedstack.ldap.LdapPoolStatistics;
+
+/**
+ * Live view of the statistics maintained by an UnboundID connection pool, along with the time waited for its connections.
+ * <p>
+ * As the pool gives no way to observe a checkout from its beginning, requests mark the moment they are ready to be sent on
+ * their thread and the wait is recorded when the pool checks the connection it is about to give.
+ */
+class PoolMetrics implements LdapPoolStatistics {
+    private static final ThreadLocal<Long> CHECKOUT_START = new ThreadLocal<>();
+    private final String name;
+    private final LDAPConnectionPool pool;
+    private final OperationMetrics checkoutWait;
+
+    PoolMetrics(String name, LDAPConnectionPool pool) {
+        this.name = name;
+        this.pool = pool;
+        this.checkoutWait = new OperationMetrics(name);
+        pool.setHealthCheck(new CheckoutTimer(pool.getHealthCheck()));
+    }
+
+    /**
+     * Marks the start of the checkout of a connection by the current thread.
+     */
+    static void startCheckout() {
+        CHECKOUT_START.set(System.nanoTime());
+    }
+
+    /**
+     * Clears the mark of the current thread if no connection was checked out since it was set.
+     */
+    static void endCheckout() {
+        CHECKOUT_START.remove();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCheckoutCount() {
+        return getStatistics().getNumSuccessfulCheckouts();
+    }
+
+    @Override
+    public long getWaitingCheckoutCount() {
+        return getStatistics().getNumSuccessfulCheckoutsAfterWaiting();
+    }
+
+    @Override
+    public long getNewConnectionCheckoutCount() {
+        return getStatistics().getNumSuccessfulCheckoutsNewConnection();
+    }
+
+    @Override
+    public long getFailedCheckoutCount() {
+        return getStatistics().getNumFailedCheckouts();
+    }
+
+    @Override
+    public long getCreatedConnectionCount() {
+        return getStatistics().getNumSuccessfulConnectionAttempts();
+    }
+
+    @Override
+    public long getFailedConnectionCount() {
+        return getStatistics().getNumFailedConnectionAttempts();
+    }
+
+    @Override
+    public long getClosedConnectionCount() {
+        LDAPConnectionPoolStatistics statistics = getStatistics();
+        return statistics.getNumConnectionsClosedDefunct()
+                + statistics.getNumConnectionsClosedExpired()
+                + statistics.getNumConnectionsClosedUnneeded();
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        return pool.getCurrentAvailableConnections();
+    }
+
+    @Override
+    public int getMaxAvailableConnections() {
+        return pool.getMaximumAvailableConnections();
+    }
+
+    @Override
+    public LdapOperationStatistics getCheckoutWait() {
+        return checkoutWait;
+    }
+
+    void reset() {
+        getStatistics().reset();
+        checkoutWait.reset();
+    }
+
+    private LDAPConnectionPoolStatistics getStatistics() {
+        return pool.getConnectionPoolStatistics();
+    }
+
+    private class CheckoutTimer extends LDAPConnectionPoolHealthCheck {
+        private final LDAPConnectionPoolHealthCheck healthCheck;
+
+        private CheckoutTimer(LDAPConnectionPoolHealthCheck healthCheck) {
+            this.healthCheck = healthCheck;
+        }
+
+        @Override
+        public void ensureNewConnectionValid(LDAPConnection connection) throws LDAPException {
+            healthCheck.ensureNewConnectionValid(connection);
+        }
+
+        @Override
+        public void ensureConnectionValidForCheckout(LDAPConnection connection) throws LDAPException {
+            Long startNanos = CHECKOUT_START.get();
+            if (startNanos != null) {
+                // only the first checkout of a request is measured, not those of its retries
+                CHECKOUT_START.remove();
+                checkoutWait.start(startNanos).success();
+            }
+            healthCheck.ensureConnectionValidForCheckout(connection);
+        }
+
+        @Override
+        public void ensureConnectionValidForRelease(LDAPConnection connection) throws LDAPException {
+            healthCheck.ensureConnectionValidForRelease(connection);
+        }
+
+        @Override
+        public void ensureConnectionValidForContinuedUse(LDAPConnection connection) throws LDAPException {
+            healthCheck.ensureConnectionValidForContinuedUse(connection);
+        }
+
+        @Override
+        public void ensureConnectionValidAfterException(LDAPConnection connection, LDAPException exception) throws LDAPException {
+            healthCheck.ensureConnectionValidAfterException(connection, exception);
+        }
+
+        @Override
+        public void toString(StringBuilder buffer) {
+            healthCheck.toString(buffer);
+        }
+    }
+}
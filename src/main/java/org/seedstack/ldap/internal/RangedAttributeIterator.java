@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterates over the values of a multi-valued attribute with ranged retrieval. Servers limiting the number of values returned at
+ * once, like Active Directory, return them as 'attribute;range=low-high' which is used to request the next range until the last
+ * one, marked 'attribute;range=low-*'. Other servers return all the values at once as the plain attribute.
+ */
+class RangedAttributeIterator implements Iterator<String> {
+    private static final String RANGE_OPTION = "range=";
+    private final OperationMetrics operationMetrics;
+    private final String attribute;
+    private final Function<String, SearchResultEntry> entryReader;
+    private final Deque<String> values = new ArrayDeque<>();
+    private String nextRequestedAttribute;
+
+    /**
+     * @param operationMetrics the metrics measuring the retrieval of each range.
+     * @param attribute        the name of the attribute.
+     * @param entryReader      the function reading the entry with the requested attribute, null if the entry doesn't exist.
+     */
+    RangedAttributeIterator(OperationMetrics operationMetrics, String attribute, Function<String, SearchResultEntry> entryReader) {
+        this.operationMetrics = operationMetrics;
+        this.attribute = attribute;
+        this.entryReader = entryReader;
+        this.nextRequestedAttribute = attribute;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (values.isEmpty() && nextRequestedAttribute != null) {
+            fetchNextRange();
+        }
+        return !values.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return values.removeFirst();
+    }
+
+    private void fetchNextRange() {
+        OperationMetrics.Sample sample = operationMetrics.start();
+        SearchResultEntry entry;
+        try {
+            entry = entryReader.apply(nextRequestedAttribute);
+        } catch (RuntimeException e) {
+            sample.failure(e);
+            nextRequestedAttribute = null;
+            throw e;
+        }
+        sample.addEntries(entry == null ? 0 : 1);
+        sample.success();
+        nextRequestedAttribute = null;
+        if (entry == null) {
+            return;
+        }
+        for (Attribute entryAttribute : entry.getAttributes()) {
+            if (!entryAttribute.getBaseName().equalsIgnoreCase(attribute)) {
+                continue;
+            }
+            String range = getRange(entryAttribute);
+            if (range == null) {
+                values.addAll(Arrays.asList(entryAttribute.getValues()));
+            } else if (entryAttribute.getValues().length > 0) {
+                values.addAll(Arrays.asList(entryAttribute.getValues()));
+                String high = range.substring(range.indexOf('-') + 1);
+                if (!"*".equals(high)) {
+                    nextRequestedAttribute = attribute + ";" + RANGE_OPTION + (Long.parseLong(high) + 1) + "-*";
+                }
+            }
+        }
+    }
+
+    private String getRange(Attribute entryAttribute) {
+        for (String option : entryAttribute.getOptions()) {
+            if (option.toLowerCase().startsWith(RANGE_OPTION)) {
+                return option.substring(RANGE_OPTION.length());
+            }
+        }
+        return null;
+    }
+}
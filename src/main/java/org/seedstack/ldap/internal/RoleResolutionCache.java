@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import org.seedstack.seed.security.Permission;
+import org.seedstack.seed.security.Role;
+import org.seedstack.seed.security.RoleMapping;
+import org.seedstack.seed.security.RolePermissionResolver;
+import org.seedstack.seed.security.principals.PrincipalProvider;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoizes the roles and permissions resolved from each distinct set of groups, so that the many users sharing the same groups
+ * are mapped once. Group sets are interned along with their fingerprint, making the resolution of a known set a single lookup.
+ * Resolutions are discarded when the role mapping or the permission resolver changes. This requires a role mapping depending
+ * only on the groups, not on the other principals of the user.
+ */
+class RoleResolutionCache {
+    private final LocalLdapCache<Resolution> rolesCache;
+    private volatile Mappings mappings = new Mappings(null, null);
+
+    RoleResolutionCache(LocalLdapCache<Resolution> rolesCache) {
+        this.rolesCache = rolesCache;
+    }
+
+    boolean isEnabled() {
+        return rolesCache.isEnabled();
+    }
+
+    /**
+     * @param groups the groups of a user.
+     * @return the shared instance of this set of groups.
+     */
+    Set<String> intern(Set<String> groups) {
+        return getResolution(groups).groups;
+    }
+
+    /**
+     * Changes the role mapping and the permission resolver, discarding all the resolutions done with the previous ones.
+     *
+     * @param roleMapping            the role mapping of the realm.
+     * @param rolePermissionResolver the permission resolver of the realm.
+     */
+    synchronized void setMappings(RoleMapping roleMapping, RolePermissionResolver rolePermissionResolver) {
+        mappings = new Mappings(roleMapping, rolePermissionResolver);
+        rolesCache.invalidateAll();
+    }
+
+    /**
+     * Maps groups to roles and resolves the permissions of these roles, unless already done for the same set of groups.
+     *
+     * @param groups          the groups of a user.
+     * @param otherPrincipals the other principals of the user.
+     * @return the roles holding their permissions.
+     */
+    Collection<Role> resolveRoles(Set<String> groups, Collection<PrincipalProvider<?>> otherPrincipals) {
+        Mappings currentMappings = mappings;
+        Resolution resolution = getResolution(groups);
+        Collection<Role> roles = resolution.roles;
+        if (roles == null || resolution.mappings != currentMappings) {
+            Collection<Role> resolvedRoles = new ArrayList<>(currentMappings.roleMapping.resolveRoles(resolution.groups, otherPrincipals));
+            // roles are shared by users once published, so their permissions must be complete beforehand
+            for (Role role : resolvedRoles) {
+                role.getPermissions().addAll(resolvePermissions(role, currentMappings));
+            }
+            roles = Collections.unmodifiableCollection(resolvedRoles);
+            resolution.publish(roles, currentMappings);
+        }
+        return roles;
+    }
+
+    /**
+     * Resolves the permissions of a role, unless already done for a role of the same name. Returning the same instances lets
+     * them be added again to memoized roles without growing their permissions.
+     *
+     * @param role the role.
+     * @return the permissions of the role.
+     */
+    Collection<Permission> resolvePermissions(Role role) {
+        return resolvePermissions(role, mappings);
+    }
+
+    private Collection<Permission> resolvePermissions(Role role, Mappings currentMappings) {
+        Collection<Permission> permissions = currentMappings.permissionsByRole.get(role.getName());
+        if (permissions == null) {
+            permissions = Collections.unmodifiableCollection(new ArrayList<>(currentMappings.rolePermissionResolver.resolvePermissionsInRole(role)));
+            Collection<Permission> previousPermissions = currentMappings.permissionsByRole.putIfAbsent(role.getName(), permissions);
+            if (previousPermissions != null) {
+                permissions = previousPermissions;
+            }
+        }
+        return permissions;
+    }
+
+    private Resolution getResolution(Set<String> groups) {
+        String fingerprint = groups instanceof GroupSet ? ((GroupSet) groups).fingerprint : fingerprint(groups);
+        Resolution resolution = rolesCache.get(fingerprint);
+        if (resolution == null) {
+            resolution = new Resolution(new GroupSet(groups, fingerprint));
+            rolesCache.put(fingerprint, resolution);
+        }
+        return resolution;
+    }
+
+    private static String fingerprint(Set<String> groups) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String group : new TreeSet<>(groups)) {
+            fingerprint.append(group.length()).append(':').append(group);
+        }
+        return fingerprint.toString();
+    }
+
+    static class Resolution {
+        private final GroupSet groups;
+        private volatile Mappings mappings;
+        private volatile Collection<Role> roles;
+
+        private Resolution(GroupSet groups) {
+            this.groups = groups;
+        }
+
+        private void publish(Collection<Role> roles, Mappings mappings) {
+            // roles are written last, so that the mappings they were resolved with are visible along with them
+            this.mappings = mappings;
+            this.roles = roles;
+        }
+    }
+
+    private static class Mappings {
+        private final RoleMapping roleMapping;
+        private final RolePermissionResolver rolePermissionResolver;
+        private final ConcurrentMap<String, Collection<Permission>> permissionsByRole = new ConcurrentHashMap<>();
+
+        private Mappings(RoleMapping roleMapping, RolePermissionResolver rolePermissionResolver) {
+            this.roleMapping = roleMapping;
+            this.rolePermissionResolver = rolePermissionResolver;
+        }
+    }
+
+    /**
+     * An immutable set of groups knowing its fingerprint.
+     */
+    private static class GroupSet extends AbstractSet<String> {
+        private final Set<String> groups;
+        private final String fingerprint;
+
+        private GroupSet(Set<String> groups, String fingerprint) {
+            this.groups = Collections.unmodifiableSet(new HashSet<>(groups));
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return groups.iterator();
+        }
+
+        @Override
+        public int size() {
+            return groups.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return groups.contains(o);
+        }
+    }
+}
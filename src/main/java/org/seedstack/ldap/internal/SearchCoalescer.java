@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchScope;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates identical searches in flight, so concurrent callers share the result of a single LDAP call. Searches are
+ * identical when they have the same base DN, scope, filter and set of attributes. A result is only shared while the search is
+ * in flight: an identical search issued after its completion is sent to the directory again.
+ */
+class SearchCoalescer {
+    private final ConcurrentMap<String, CompletableFuture<SearchResult>> inFlightSearches = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a search unless an identical one is already in flight, in which case its result is returned instead.
+     *
+     * @param baseDN     the base DN of the search.
+     * @param scope      the scope of the search.
+     * @param filter     the filter of the search.
+     * @param attributes the attributes retrieved by the search.
+     * @param searcher   the function running the search, called on the calling thread if no identical search is in flight.
+     * @return the future result of the search.
+     */
+    CompletableFuture<SearchResult> search(String baseDN, SearchScope scope, Filter filter, String[] attributes, Supplier<CompletableFuture<SearchResult>> searcher) {
+        final String key = createKey(baseDN, scope, filter, attributes);
+        final CompletableFuture<SearchResult> search = new CompletableFuture<>();
+        CompletableFuture<SearchResult> inFlightSearch = inFlightSearches.putIfAbsent(key, search);
+        if (inFlightSearch != null) {
+            return inFlightSearch;
+        }
+        CompletableFuture<SearchResult> result;
+        try {
+            result = searcher.get();
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((searchResult, throwable) -> {
+            // removed before completion so that callers coming after the completion don't get a stale result
+            inFlightSearches.remove(key, search);
+            if (throwable == null) {
+                search.complete(searchResult);
+            } else {
+                search.completeExceptionally(throwable);
+            }
+        });
+        return search;
+    }
+
+    private String createKey(String baseDN, SearchScope scope, Filter filter, String[] attributes) {
+        String[] normalizedAttributes = new String[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            normalizedAttributes[i] = attributes[i].toLowerCase();
+        }
+        Arrays.sort(normalizedAttributes);
+        return LdapUtils.normalizeDn(baseDN) + "|" + scope.intValue() + "|" + filter.toNormalizedString() + "|" + Arrays.toString(normalizedAttributes);
+    }
+}
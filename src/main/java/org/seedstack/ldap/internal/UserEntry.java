@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.internal;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a user found in the directory, suitable for caching.
+ */
+final class UserEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String dn;
+    private final Map<String, String> attributes;
+
+    UserEntry(String dn, Map<String, String> attributes) {
+        this.dn = dn;
+        this.attributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+    }
+
+    String getDn() {
+        return dn;
+    }
+
+    Map<String, String> getAttributes() {
+        return attributes;
+    }
+}
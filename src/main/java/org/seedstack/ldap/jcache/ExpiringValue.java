@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.jcache;
+
+import java.io.Serializable;
+
+/**
+ * A value stored in a JCache along with its own expiration time, as JCache expiry policies apply to all the entries of a
+ * cache and can't depend on the value. The expiration time is a wall-clock time so that it remains valid for the other
+ * application instances sharing the cache.
+ *
+ * @param <V> the type of the value
+ */
+class ExpiringValue<V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final V value;
+    private final long expirationMillis;
+
+    /**
+     * @param value            the cached value
+     * @param expirationMillis the epoch time in milliseconds after which the value is expired, or 0 if it only expires with
+     *                         the expiry policy of the cache
+     */
+    ExpiringValue(V value, long expirationMillis) {
+        this.value = value;
+        this.expirationMillis = expirationMillis;
+    }
+
+    V getValue() {
+        return value;
+    }
+
+    boolean isExpired(long nowMillis) {
+        return expirationMillis > 0 && nowMillis >= expirationMillis;
+    }
+}
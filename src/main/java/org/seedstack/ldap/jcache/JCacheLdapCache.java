@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.jcache;
+
+import org.seedstack.ldap.LdapCache;
+
+import javax.cache.Cache;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An LDAP cache backed by a JCache. Hits and misses are counted by each application instance, while evictions and the size
+ * are not observable through the JCache API and are not reported. Entries put with their own time-to-live are stored with
+ * their expiration time and treated as absent once expired, until replaced or removed by the expiry policy of the cache.
+ *
+ * @param <V> the type of cached values
+ */
+class JCacheLdapCache<V> implements LdapCache<V> {
+    private final String name;
+    private final Cache<String, ExpiringValue<V>> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    JCacheLdapCache(String name, Cache<String, ExpiringValue<V>> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    @Override
+    public V get(String key) {
+        ExpiringValue<V> entry = cache.get(key);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.getValue();
+    }
+
+    @Override
+    public void put(String key, V value) {
+        cache.put(key, new ExpiringValue<>(value, 0));
+    }
+
+    @Override
+    public void put(String key, V value, long ttlMillis) {
+        cache.put(key, new ExpiringValue<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    @Override
+    public void invalidate(String key) {
+        cache.remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.removeAll();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return 0;
+    }
+
+    @Override
+    public int getSize() {
+        return -1;
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long requestCount = hits + missCount.get();
+        return requestCount == 0 ? 0 : (double) hits / requestCount;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2013-2016, The SeedStack authors <http://seedstack.org>
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package org.seedstack.ldap.jcache;
+
+import org.seedstack.ldap.LdapCache;
+import org.seedstack.ldap.LdapCacheProvider;
+import org.seedstack.ldap.LdapConfig;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the LDAP caches with a JCache (JSR-107) implementation, which can share them between application instances. It is
+ * enabled by setting {@code security.ldap.cacheProvider} to this class and adding a JCache implementation to the classpath.
+ * <p>
+ * Caches are named after the LDAP cache names prefixed with {@value #CACHE_NAME_PREFIX}. A cache already existing in the
+ * cache manager, like one declared in the configuration of the JCache implementation to set up distribution or near caching,
+ * is used as is. Otherwise it is created with the time-to-live of the LDAP cache configuration, the maximum size and
+ * the eviction policy being left to the JCache implementation. Values are stored along with their own expiration time, so
+ * declared caches must not restrict their value type.
+ */
+public class JCacheLdapCacheProvider implements LdapCacheProvider {
+    public static final String CACHE_NAME_PREFIX = "seed-ldap-";
+    private final CacheManager cacheManager;
+
+    /**
+     * Creates the provider with the default cache manager of the default JCache implementation.
+     */
+    public JCacheLdapCacheProvider() {
+        this(Caching.getCachingProvider().getCacheManager());
+    }
+
+    /**
+     * Creates the provider with a specific cache manager.
+     *
+     * @param cacheManager the JCache manager holding the caches.
+     */
+    public JCacheLdapCacheProvider(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public <V> LdapCache<V> createCache(String name, LdapConfig.CacheConfig cacheConfig) {
+        String cacheName = CACHE_NAME_PREFIX + name;
+        Cache<String, ExpiringValue<V>> cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            MutableConfiguration<String, ExpiringValue<V>> configuration = new MutableConfiguration<>();
+            if (cacheConfig.getTtl() > 0) {
+                configuration.setExpiryPolicyFactory(ModifiedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, cacheConfig.getTtl())));
+            }
+            try {
+                cache = cacheManager.createCache(cacheName, configuration);
+            } catch (CacheException e) {
+                // created in the meantime by another user of the cache manager
+                cache = cacheManager.getCache(cacheName);
+                if (cache == null) {
+                    throw e;
+                }
+            }
+        }
+        return new JCacheLdapCache<>(name, cache);
+    }
+}